@@ -0,0 +1,75 @@
+package bench;
+
+import game.GameState;
+import game.Solver;
+
+/**
+ * 规范键效果测试
+ *
+ * 在一组固定牌局编号生成的单花色和双花色牌局上，分别以Zobrist哈希值和规范键作为置换表的键求解，
+ * 每局使用相同的节点上限，输出各自展开的节点数、耗时和结论
+ * 两种方式都得出结论（找到获胜路线或搜索完毕）的牌局单独汇总，比较得出相同结论所需的节点数
+ * 规范键合并了等价局面，深度优先搜索的路线随之改变，个别牌局找到获胜路线所需的节点数可能反而增加，
+ * 主要看节点上限内得出结论的牌局数
+ *
+ * 运行方式：java bench.CanonicalKeyBench [每局节点上限] [每种难度的牌局数]
+ */
+public class CanonicalKeyBench {
+    private static final int[] DIFFICULTIES = {1, 2};
+
+    public static void main(String[] args) {
+        long maxNodes = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        int deals = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Solver plain = new Solver(maxNodes, 600_000);
+        plain.setCanonical(false);
+        Solver canonical = new Solver(maxNodes, 600_000);
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            GameState state = new GameState(2, 900 + i);
+            plain.solve(state);
+            canonical.solve(state);
+        }
+
+        System.out.printf("每局节点上限: %,d, 每种难度牌局数: %d%n", maxNodes, deals);
+        for (int difficulty : DIFFICULTIES) {
+            long plainNodes = 0, canonicalNodes = 0;
+            long plainSolvedNodes = 0, canonicalSolvedNodes = 0;
+            long plainNanos = 0, canonicalNanos = 0;
+            int plainDecided = 0, canonicalDecided = 0, bothDecided = 0;
+            for (int i = 0; i < deals; i++) {
+                GameState state = new GameState(difficulty, 1000 + i);
+
+                long start = System.nanoTime();
+                Solver.Result a = plain.solve(state);
+                plainNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                Solver.Result b = canonical.solve(state);
+                canonicalNanos += System.nanoTime() - start;
+
+                plainNodes += a.nodes;
+                canonicalNodes += b.nodes;
+                boolean aDecided = a.status != Solver.Status.UNKNOWN;
+                boolean bDecided = b.status != Solver.Status.UNKNOWN;
+                if (aDecided) plainDecided++;
+                if (bDecided) canonicalDecided++;
+                if (aDecided && bDecided) {
+                    bothDecided++;
+                    plainSolvedNodes += a.nodes;
+                    canonicalSolvedNodes += b.nodes;
+                }
+                System.out.printf("难度 %d 牌局 %d: 哈希 %,10d 节点 %-7s 规范键 %,10d 节点 %-7s%n",
+                        difficulty, 1000 + i, a.nodes, a.status, b.nodes, b.status);
+            }
+            System.out.printf("难度 %d 合计: 哈希 %,d 节点 %.2f 秒 得出结论 %d 局; 规范键 %,d 节点 %.2f 秒 得出结论 %d 局%n",
+                    difficulty, plainNodes, plainNanos / 1e9, plainDecided,
+                    canonicalNodes, canonicalNanos / 1e9, canonicalDecided);
+            if (bothDecided > 0) {
+                System.out.printf("难度 %d 两种方式都得出结论的 %d 局: 哈希 %,d 节点, 规范键 %,d 节点, 比值 %.2f%n",
+                        difficulty, bothDecided, plainSolvedNodes, canonicalSolvedNodes,
+                        (double) canonicalSolvedNodes / plainSolvedNodes);
+            }
+        }
+    }
+}
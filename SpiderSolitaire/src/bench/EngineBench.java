@@ -0,0 +1,204 @@
+package bench;
+
+import game.GameState;
+import game.MoveGenerator;
+import game.SpiderGame;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 游戏引擎热点操作的JMH基准测试
+ *
+ * 在固定的局面集合上测量SpiderGame各个操作的耗时：
+ * - 局面集合：每种难度（单花色、双花色、四花色）取固定编号的牌局，
+ *   再用固定种子随机走0-59步，同一版本的代码每次运行得到完全相同的局面
+ * - 每次调用按顺序取集合中的下一个局面（或下一个移动），循环使用
+ *
+ * 会修改局面的操作成对测量，测完后局面恢复原状：
+ * - moveUndo：移动后立即撤销
+ * - dealUndo：在能发牌的局面上发牌后立即撤销
+ * - checkAndRemoveCompleteSets：移动、检查、撤销（包括移除的牌组），
+ *   检查只处理放入过牌的列，必须先移动；减去moveUndo即为检查的开销
+ *
+ * 运行方式：gradle :bench:jmh [-PjmhResult=结果文件] [-PjmhInclude=测试名的正则]
+ * 任务总是带上 -prof gc -rf json，结果文件可以直接用JMH的对比工具比较两次构建
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class EngineBench {
+    private static final int POSITIONS = 64;
+
+    /**
+     * canMove每次调用检查一个局面上全部 10x9x13 种移动组合
+     */
+    private static final int CAN_MOVE_CHECKS = 10 * 9 * 13;
+
+    /**
+     * 请求提示的局面数，提示比其他操作慢几个数量级，只取集合中的前几个局面
+     */
+    private static final int HINT_POSITIONS = 8;
+
+    /**
+     * 某一难度下的固定局面集合
+     * 所有合法移动（不含发牌）按局面展开为一个列表，另外记录能发牌的局面
+     */
+    @State(Scope.Thread)
+    public static class Corpus {
+        @Param({"1", "2", "4"})
+        int difficulty;
+
+        final SpiderGame[] games = new SpiderGame[POSITIONS];
+        int[] movePositions;
+        int[] moves;
+        int[] dealPositions;
+
+        private int nextPosition;
+        private int nextMove;
+        private int nextDeal;
+        private int nextHint;
+
+        @Setup(Level.Trial)
+        public void build() {
+            SplittableRandom random = new SplittableRandom(difficulty);
+            int[] buffer = new int[MoveGenerator.MAX_MOVES];
+            int[] positions = new int[POSITIONS * MoveGenerator.MAX_MOVES];
+            int[] list = new int[POSITIONS * MoveGenerator.MAX_MOVES];
+            int[] dealable = new int[POSITIONS];
+            int count = 0;
+            int deals = 0;
+            for (int i = 0; i < POSITIONS; i++) {
+                SpiderGame game = new SpiderGame(difficulty, 10_000 + i);
+                int steps = random.nextInt(60);
+                for (int k = 0; k < steps; k++) {
+                    int n = MoveGenerator.generate(game.getState(), buffer);
+                    if (n == 0) break;
+                    apply(game, buffer[random.nextInt(n)]);
+                    game.checkAndRemoveCompleteSets();
+                }
+                games[i] = game;
+
+                int n = MoveGenerator.generate(game.getState(), buffer);
+                for (int k = 0; k < n; k++) {
+                    if (buffer[k] == MoveGenerator.DEAL) {
+                        dealable[deals++] = i;
+                    } else {
+                        positions[count] = i;
+                        list[count++] = buffer[k];
+                    }
+                }
+            }
+            if (count == 0 || deals == 0) throw new IllegalStateException("局面集合中没有可执行的移动或发牌");
+            movePositions = Arrays.copyOf(positions, count);
+            moves = Arrays.copyOf(list, count);
+            dealPositions = Arrays.copyOf(dealable, deals);
+        }
+
+        SpiderGame nextPosition() {
+            SpiderGame game = games[nextPosition];
+            nextPosition = (nextPosition + 1) % POSITIONS;
+            return game;
+        }
+
+        /**
+         * @return 下一个移动在展开列表中的下标
+         */
+        int nextMove() {
+            int k = nextMove;
+            nextMove = (nextMove + 1) % moves.length;
+            return k;
+        }
+
+        SpiderGame nextDealable() {
+            SpiderGame game = games[dealPositions[nextDeal]];
+            nextDeal = (nextDeal + 1) % dealPositions.length;
+            return game;
+        }
+
+        SpiderGame nextHintPosition() {
+            SpiderGame game = games[nextHint];
+            nextHint = (nextHint + 1) % HINT_POSITIONS;
+            return game;
+        }
+    }
+
+    /**
+     * 检查一个局面上的全部移动组合，报告的是单次canMove的耗时
+     */
+    @Benchmark
+    @OperationsPerInvocation(CAN_MOVE_CHECKS)
+    public int canMove(Corpus corpus) {
+        SpiderGame game = corpus.nextPosition();
+        int legal = 0;
+        for (int from = 0; from < 10; from++) {
+            for (int to = 0; to < 10; to++) {
+                if (from == to) continue;
+                for (int count = 1; count <= 13; count++) {
+                    if (game.canMove(from, to, count)) legal++;
+                }
+            }
+        }
+        return legal;
+    }
+
+    @Benchmark
+    public void moveUndo(Corpus corpus) {
+        int k = corpus.nextMove();
+        SpiderGame game = corpus.games[corpus.movePositions[k]];
+        apply(game, corpus.moves[k]);
+        game.undo();
+    }
+
+    @Benchmark
+    public boolean dealUndo(Corpus corpus) {
+        SpiderGame game = corpus.nextDealable();
+        boolean dealt = game.deal();
+        if (dealt) game.undo();
+        return dealt;
+    }
+
+    /**
+     * 移动、检查并移除完整牌组，再撤销全部操作
+     */
+    @Benchmark
+    public boolean checkAndRemoveCompleteSets(Corpus corpus) {
+        int k = corpus.nextMove();
+        SpiderGame game = corpus.games[corpus.movePositions[k]];
+        GameState state = game.getState();
+        int mark = state.undoLog.size();
+        apply(game, corpus.moves[k]);
+        boolean removed = game.checkAndRemoveCompleteSets();
+        while (state.undoLog.size() > mark) game.undo();
+        return removed;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String hint(Corpus corpus) {
+        return corpus.nextHintPosition().hint();
+    }
+
+    private static void apply(SpiderGame game, int move) {
+        if (move == MoveGenerator.DEAL) {
+            game.deal();
+        } else {
+            game.move(MoveGenerator.from(move), MoveGenerator.to(move), MoveGenerator.count(move));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import game.GameState;
+import game.MoveGenerator;
+import game.SpiderGame;
+import java.util.Random;
+
+/**
+ * 移动生成性能对比
+ *
+ * 在一批随机对局中途的局面上，分别用两种方式找出全部合法移动：
+ * - canMove循环：对90个列组合和每种张数逐一调用SpiderGame.canMove
+ * - MoveGenerator：一次生成全部合法移动
+ * 输出每秒处理的局面数和每秒生成的合法移动数
+ *
+ * 运行方式：java bench.MoveGeneratorBench [局面数]
+ */
+public class MoveGeneratorBench {
+    public static void main(String[] args) {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(42);
+
+        // 构造测试局面：从新局开始随机走若干步
+        SpiderGame[] games = new SpiderGame[positions];
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < positions; i++) {
+            int difficulty = new int[]{1, 2, 4}[i % 3];
+            SpiderGame game = new SpiderGame(difficulty, i);
+            int steps = random.nextInt(60);
+            for (int k = 0; k < steps; k++) {
+                int n = MoveGenerator.generate(game.getState(), buffer);
+                if (n == 0) break;
+                int m = buffer[random.nextInt(n)];
+                if (m == MoveGenerator.DEAL) {
+                    game.deal();
+                } else {
+                    game.move(MoveGenerator.from(m), MoveGenerator.to(m), MoveGenerator.count(m));
+                }
+                game.checkAndRemoveCompleteSets();
+            }
+            games[i] = game;
+        }
+
+        // 预热并校验两种方式找到的移动数量一致
+        long expected = canMoveLoop(games);
+        long actual = generatorLoop(games, buffer);
+        if (expected != actual) {
+            throw new IllegalStateException("移动数量不一致: canMove=" + expected + ", MoveGenerator=" + actual);
+        }
+        for (int i = 0; i < 20; i++) {
+            canMoveLoop(games);
+            generatorLoop(games, buffer);
+        }
+
+        report("canMove循环", games.length, () -> canMoveLoop(games));
+        report("MoveGenerator", games.length, () -> generatorLoop(games, buffer));
+    }
+
+    /**
+     * 逐一尝试所有（源列，目标列，张数）组合
+     * 发牌不在canMove的职责范围内，为了与生成器对齐按同样的条件单独计入
+     */
+    private static long canMoveLoop(SpiderGame[] games) {
+        long found = 0;
+        for (SpiderGame game : games) {
+            GameState state = game.getState();
+            for (int from = 0; from < 10; from++) {
+                int size = state.board.size(from);
+                for (int to = 0; to < 10; to++) {
+                    if (from == to) continue;
+                    for (int count = 1; count <= size; count++) {
+                        if (game.canMove(from, to, count)) found++;
+                    }
+                }
+            }
+            if (canDeal(state)) found++;
+        }
+        return found;
+    }
+
+    private static long generatorLoop(SpiderGame[] games, int[] buffer) {
+        long found = 0;
+        for (SpiderGame game : games) {
+            found += MoveGenerator.generate(game.getState(), buffer);
+        }
+        return found;
+    }
+
+    private static boolean canDeal(GameState state) {
+        if (state.remainingDeals <= 0 || state.board.stockSize() < 10) return false;
+        for (int i = 0; i < 10; i++) {
+            if (state.board.isEmpty(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 反复执行至少一秒，输出吞吐量
+     */
+    private static void report(String name, int positions, java.util.function.LongSupplier pass) {
+        long moves = 0;
+        long passes = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            moves += pass.getAsLong();
+            passes++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < 1_000_000_000L);
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-14s %,14.0f 局面/秒 %,16.0f 移动/秒%n",
+                name, passes * positions / seconds, moves / seconds);
+    }
+}
@@ -0,0 +1,97 @@
+package bench;
+
+import game.GameState;
+import game.ParallelSolver;
+import game.Solver;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 并行求解器扩展性测试
+ *
+ * 在一组固定牌局编号生成的单花色、双花色和四花色牌局上，分别用1、2、4、8、16个线程求解，
+ * 每局使用相同的节点上限，记录每局得出结论（WIN或NO_WIN）所用的时间
+ *
+ * 加速比只在所有线程数都得出结论的牌局上计算：
+ * - 加速比：这些牌局上单线程的总耗时除以该线程数的总耗时
+ * - 几何平均：逐局计算单线程耗时与该线程数耗时之比，再取几何平均，避免被个别长局主导
+ * 并行搜索的多余线程会搜索投机的、重复的子树，每秒节点数只反映吞吐量，作为参考列输出；
+ * 达到节点上限仍没有结论的牌局不参与加速比的计算
+ *
+ * 运行方式：java bench.ParallelSolverBench [每局节点上限] [牌局数]
+ */
+public class ParallelSolverBench {
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final int[] DIFFICULTIES = {1, 2, 4};
+
+    public static void main(String[] args) {
+        long maxNodes = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        int deals = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+
+        List<GameState> corpus = new ArrayList<>();
+        for (int i = 0; i < deals; i++) {
+            corpus.add(new GameState(DIFFICULTIES[i % DIFFICULTIES.length], 1000 + i));
+        }
+
+        // 预热
+        ParallelSolver warmup = new ParallelSolver(Runtime.getRuntime().availableProcessors(), maxNodes / 4, 60_000);
+        for (GameState state : corpus) warmup.solve(state);
+        warmup.shutdown();
+
+        System.out.printf("可用处理器: %d, 每局节点上限: %,d, 牌局数: %d%n",
+                Runtime.getRuntime().availableProcessors(), maxNodes, deals);
+
+        // 每种线程数下每局的耗时、节点数和是否得出结论
+        long[][] nanos = new long[THREADS.length][deals];
+        long[][] nodes = new long[THREADS.length][deals];
+        boolean[][] decided = new boolean[THREADS.length][deals];
+        for (int t = 0; t < THREADS.length; t++) {
+            ParallelSolver solver = new ParallelSolver(THREADS[t], maxNodes, 600_000);
+            for (int i = 0; i < deals; i++) {
+                long start = System.nanoTime();
+                Solver.Result result = solver.solve(corpus.get(i));
+                nanos[t][i] = System.nanoTime() - start;
+                nodes[t][i] = result.nodes;
+                decided[t][i] = result.status != Solver.Status.UNKNOWN;
+            }
+            solver.shutdown();
+        }
+
+        // 所有线程数都得出结论的牌局
+        boolean[] common = new boolean[deals];
+        int commonCount = 0;
+        for (int i = 0; i < deals; i++) {
+            common[i] = true;
+            for (int t = 0; t < THREADS.length; t++) common[i] &= decided[t][i];
+            if (common[i]) commonCount++;
+        }
+        System.out.printf("所有线程数都得出结论的牌局: %d / %d%n", commonCount, deals);
+
+        for (int t = 0; t < THREADS.length; t++) {
+            int decidedCount = 0;
+            long totalNanos = 0;
+            long totalNodes = 0;
+            long commonNanos = 0;
+            long baselineNanos = 0;
+            double logRatio = 0;
+            for (int i = 0; i < deals; i++) {
+                if (decided[t][i]) decidedCount++;
+                totalNanos += nanos[t][i];
+                totalNodes += nodes[t][i];
+                if (!common[i]) continue;
+                commonNanos += nanos[t][i];
+                baselineNanos += nanos[0][i];
+                logRatio += Math.log((double) nanos[0][i] / nanos[t][i]);
+            }
+            double rate = totalNodes / (totalNanos / 1e9);
+            if (commonCount == 0) {
+                System.out.printf("线程 %2d: 得出结论 %d 局, 加速比 -, %,14.0f 节点/秒%n",
+                        THREADS[t], decidedCount, rate);
+                continue;
+            }
+            System.out.printf("线程 %2d: 得出结论 %d 局, 共同牌局耗时 %,10.1f 毫秒, 加速比 %5.2f, 几何平均 %5.2f, %,14.0f 节点/秒%n",
+                    THREADS[t], decidedCount, commonNanos / 1e6, (double) baselineNanos / commonNanos,
+                    Math.exp(logRatio / commonCount), rate);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import game.GameState;
+import game.Solver;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 置换表大小测试
+ *
+ * 在一组固定牌局编号生成的四花色牌局上，用不同大小的堆外置换表求解，
+ * 输出每种大小下的耗时、求解结果以及最后一局的命中率、冲突率和填充率
+ *
+ * 运行方式：java -XX:MaxDirectMemorySize=9g bench.TranspositionTableBench [每局节点上限] [表大小MB...]
+ */
+public class TranspositionTableBench {
+    public static void main(String[] args) {
+        long maxNodes = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        long[] sizes = {16, 64, 256};
+        if (args.length > 1) {
+            sizes = new long[args.length - 1];
+            for (int i = 1; i < args.length; i++) sizes[i - 1] = Long.parseLong(args[i]);
+        }
+
+        List<GameState> corpus = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            corpus.add(new GameState(4, 2000 + i));
+        }
+
+        System.out.printf("每局节点上限: %,d, 牌局数: %d%n", maxNodes, corpus.size());
+        for (long megabytes : sizes) {
+            Solver solver = new Solver(maxNodes, 600_000, megabytes);
+            int won = 0;
+            int unknown = 0;
+            Solver.Result last = null;
+            long start = System.nanoTime();
+            for (GameState state : corpus) {
+                last = solver.solve(state);
+                if (last.status == Solver.Status.WIN) won++;
+                if (last.status == Solver.Status.UNKNOWN) unknown++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%,6d MB: 耗时 %7.2f 秒, 获胜 %d 局, 未知 %d 局, %s%n",
+                    megabytes, seconds, won, unknown, last.tableStats);
+        }
+    }
+}
@@ -0,0 +1,650 @@
+package game;
+
+import java.util.Arrays;
+import model.Card;
+
+/**
+ * 紧凑牌面类
+ *
+ * 用扁平的byte数组保存10个牌列和剩余牌堆，每张牌占一个字节，只表示是哪一张牌：
+ * - 低4位：点数（1-13）
+ * - 第4-5位：花色序号（Card.Suit.ordinal()）
+ * 牌是否正面朝上由所在的列决定：暗牌总是位于一列的最底部，每列只记录暗牌张数
+ *
+ * 第i列的第j张牌（从底部数起）存放在 cells[i * MAX_HEIGHT + j]，每列的张数记录在sizes中
+ * 所有操作都不加锁、不装箱、不创建对象，供SpiderGame和求解器等搜索程序共用
+ * 界面绘制需要Card对象时，可以通过cardAt()取得共享的Card实例
+ *
+ * 牌面同时维护一个64位Zobrist哈希值：每个（位置，牌）组合对应一个固定的随机数，
+ * 哈希值是所有这些随机数的异或。每次修改只对变动的牌做异或，代价与移动的张数成正比，
+ * 求解器的置换表和提示缓存可以直接用它识别重复局面
+ *
+ * 每列还缓存两项元数据，同样在每次修改时增量维护：
+ * - 暗牌张数：下标小于该值的牌都是背面朝上，这也是牌面朝向的唯一记录
+ * - 列顶可移动牌组长度：顶部同花色、连续递减的正面牌张数
+ * 移动合法性判断、拖拽和搜索都直接读取这两项数据，无需逐张扫描
+ *
+ * 完整牌组只可能出现在刚放入牌的列上，牌面用一个位掩码记录自上次检查以来放入过牌的列，
+ * 结合可移动牌组长度（长度达到13即为同花色K到A），检查完整牌组只需要常数时间
+ */
+public class Board {
+    /**
+     * 牌列数量
+     */
+    public static final int COLUMNS = 10;
+
+    /**
+     * 单列最多容纳的牌数（整副104张牌的上限）
+     */
+    public static final int MAX_HEIGHT = 104;
+
+    /**
+     * 牌堆最多容纳的牌数（初始发完54张后剩余50张）
+     */
+    public static final int MAX_STOCK = 50;
+
+    /**
+     * 所有牌列的牌，按列连续存放
+     */
+    private final byte[] cells = new byte[COLUMNS * MAX_HEIGHT];
+
+    /**
+     * 每列的张数
+     */
+    private final int[] sizes = new int[COLUMNS];
+
+    /**
+     * 每列底部的暗牌张数
+     */
+    private final int[] faceDown = new int[COLUMNS];
+
+    /**
+     * 每列顶部同花色连续递减的可移动牌组长度
+     */
+    private final int[] runs = new int[COLUMNS];
+
+    /**
+     * 自上次takeDirtyColumns()以来放入过牌的列，第i位对应第i列
+     */
+    private int dirtyColumns;
+
+    /**
+     * 自上次takeModified()以来内容有变化的列，第i位对应第i列，第COLUMNS位对应牌堆
+     * 供Snapshot判断哪些列可以与上一个快照共享，新建或整体复制的牌面视为全部变化
+     */
+    private int modified = MODIFIED_ALL;
+
+    /**
+     * 所有列和牌堆都有变化时的modified掩码
+     */
+    public static final int MODIFIED_ALL = (1 << (COLUMNS + 1)) - 1;
+
+    /**
+     * 剩余牌堆，下标越大越靠近堆顶
+     */
+    private final byte[] stock = new byte[MAX_STOCK];
+
+    /**
+     * 剩余牌堆张数
+     */
+    private int stockSize;
+
+    /**
+     * 当前牌面的Zobrist哈希值，随每次修改增量更新
+     */
+    private long hash;
+
+    /**
+     * 是否在SpiderGame的每次操作后用完整重算校验增量哈希，供测试使用
+     * 通过JVM参数 -Dspider.checkHash=true 开启
+     */
+    public static final boolean CHECK_HASH = Boolean.getBoolean("spider.checkHash");
+
+    /**
+     * 牌列中每个位置、每种牌（花色和点数，按低6位编码）对应的随机数
+     */
+    private static final long[] CELL_KEYS = new long[COLUMNS * MAX_HEIGHT * 64];
+
+    /**
+     * 牌列中每个位置的牌正面朝上时额外异或的随机数
+     */
+    private static final long[] FACE_KEYS = new long[COLUMNS * MAX_HEIGHT];
+
+    /**
+     * 牌堆中每个位置、每种牌对应的随机数
+     */
+    private static final long[] STOCK_KEYS = new long[MAX_STOCK * 64];
+
+    static {
+        // 使用固定种子生成随机数，保证同一局面在不同运行中的哈希值相同
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < CELL_KEYS.length; i++) CELL_KEYS[i] = seed = nextKey(seed);
+        for (int i = 0; i < FACE_KEYS.length; i++) FACE_KEYS[i] = seed = nextKey(seed);
+        for (int i = 0; i < STOCK_KEYS.length; i++) STOCK_KEYS[i] = seed = nextKey(seed);
+    }
+
+    /**
+     * SplitMix64：由上一个随机数生成下一个随机数
+     */
+    private static long nextKey(long x) {
+        long z = x + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 由cells中的编码取得Card.Suit，避免每次调用values()复制数组
+     */
+    private static final Card.Suit[] SUITS = Card.Suit.values();
+
+    /**
+     * @return 牌列中指定下标（cells中的下标）放置指定牌时的哈希分量
+     */
+    private static long cellKey(int cell, byte code, boolean faceUp) {
+        long key = CELL_KEYS[(cell << 6) | code];
+        return faceUp ? key ^ FACE_KEYS[cell] : key;
+    }
+
+    /**
+     * @return 牌列中指定下标放置一张正面朝上的牌时的哈希分量
+     */
+    private static long faceUpKey(int cell, byte code) {
+        return CELL_KEYS[(cell << 6) | code] ^ FACE_KEYS[cell];
+    }
+
+    /**
+     * 创建一个空牌面
+     */
+    public Board() {
+    }
+
+    /**
+     * 复制构造函数
+     * @param other 要复制的牌面
+     */
+    public Board(Board other) {
+        copyFrom(other);
+    }
+
+    /**
+     * 用另一个牌面的内容覆盖当前牌面，不创建新对象
+     * @param other 来源牌面
+     */
+    public void copyFrom(Board other) {
+        for (int i = 0; i < COLUMNS; i++) {
+            System.arraycopy(other.cells, i * MAX_HEIGHT, cells, i * MAX_HEIGHT, other.sizes[i]);
+            sizes[i] = other.sizes[i];
+            faceDown[i] = other.faceDown[i];
+            runs[i] = other.runs[i];
+        }
+        System.arraycopy(other.stock, 0, stock, 0, other.stockSize);
+        stockSize = other.stockSize;
+        hash = other.hash;
+        dirtyColumns = other.dirtyColumns;
+        modified = MODIFIED_ALL;
+    }
+
+    // ---------------------------------------------------------------
+    // 单张牌的编码
+    // ---------------------------------------------------------------
+
+    /**
+     * 将牌编码为一个字节
+     * @param suit 花色
+     * @param rank 点数（1-13）
+     * @return 编码后的字节
+     */
+    public static byte encode(Card.Suit suit, int rank) {
+        return (byte) ((suit.ordinal() << 4) | rank);
+    }
+
+    /**
+     * 将Card对象编码为一个字节
+     */
+    public static byte encode(Card card) {
+        return encode(card.getSuit(), card.getRank());
+    }
+
+    /**
+     * @return 编码中的点数（1-13）
+     */
+    public static int rank(byte code) {
+        return code & 0x0F;
+    }
+
+    /**
+     * @return 编码中的花色序号（0-3）
+     */
+    public static int suit(byte code) {
+        return (code >> 4) & 0x03;
+    }
+
+    /**
+     * 将编码还原为共享的Card对象，不创建新对象
+     */
+    public static Card toCard(byte code) {
+        return Card.of(SUITS[suit(code)], rank(code));
+    }
+
+    // ---------------------------------------------------------------
+    // 查询
+    // ---------------------------------------------------------------
+
+    /**
+     * @return 指定列的张数
+     */
+    public int size(int col) {
+        return sizes[col];
+    }
+
+    /**
+     * @return 指定列是否为空
+     */
+    public boolean isEmpty(int col) {
+        return sizes[col] == 0;
+    }
+
+    /**
+     * @return 指定列第index张牌的编码（0为最底部）
+     */
+    public byte get(int col, int index) {
+        return cells[col * MAX_HEIGHT + index];
+    }
+
+    /**
+     * @return 指定列最顶部的牌的编码，调用前需保证该列非空
+     */
+    public byte top(int col) {
+        return cells[col * MAX_HEIGHT + sizes[col] - 1];
+    }
+
+    /**
+     * @return 指定位置的牌的点数
+     */
+    public int rankAt(int col, int index) {
+        return rank(get(col, index));
+    }
+
+    /**
+     * @return 指定位置的牌的花色序号
+     */
+    public int suitAt(int col, int index) {
+        return suit(get(col, index));
+    }
+
+    /**
+     * @return 指定位置的牌是否正面朝上
+     */
+    public boolean isFaceUp(int col, int index) {
+        return index >= faceDown[col];
+    }
+
+    /**
+     * 获取列顶可以整体移动的同花色连续递减牌组长度，O(1)
+     * @param col 列索引
+     * @return 可移动牌组长度，空列或顶部为暗牌时返回0
+     */
+    public int movableRun(int col) {
+        return runs[col];
+    }
+
+    /**
+     * 获取指定列底部的暗牌张数，O(1)
+     * @param col 列索引
+     * @return 暗牌张数
+     */
+    public int faceDownCount(int col) {
+        return faceDown[col];
+    }
+
+    /**
+     * 判断指定列顶部是否为一组完整的同花色K到A，O(1)
+     * 同花色连续递减的牌组最长13张，长度达到13时必然是K到A
+     */
+    public boolean hasCompleteRun(int col) {
+        return runs[col] == 13;
+    }
+
+    /**
+     * 取出并清空自上次调用以来放入过牌的列的掩码
+     * @return 位掩码，第i位为1表示第i列放入过牌
+     */
+    public int takeDirtyColumns() {
+        int dirty = dirtyColumns;
+        dirtyColumns = 0;
+        return dirty;
+    }
+
+    /**
+     * 取出并清空自上次调用以来内容有变化的列和牌堆的掩码
+     * @return 位掩码，第i位为1表示第i列有变化，第COLUMNS位为1表示牌堆有变化
+     */
+    public int takeModified() {
+        int result = modified;
+        modified = 0;
+        return result;
+    }
+
+    /**
+     * @return 指定列从底到顶全部牌的编码副本
+     */
+    public byte[] copyColumn(int col) {
+        int base = col * MAX_HEIGHT;
+        return Arrays.copyOfRange(cells, base, base + sizes[col]);
+    }
+
+    /**
+     * @return 牌堆从底到顶全部牌的编码副本
+     */
+    public byte[] copyStock() {
+        return Arrays.copyOf(stock, stockSize);
+    }
+
+    /**
+     * 从列顶开始逐张扫描，计算可移动牌组长度
+     * 同花色连续递减的牌组最长13张，扫描的代价有固定上限
+     */
+    private int scanRun(int col) {
+        int size = sizes[col];
+        if (size == 0 || faceDown[col] == size) return 0;
+        int base = col * MAX_HEIGHT;
+        byte upper = cells[base + size - 1];
+        int run = 1;
+        for (int i = size - 2; i >= faceDown[col]; i--) {
+            byte lower = cells[base + i];
+            // 下面的牌必须是正面（由循环范围保证）、同花色且点数正好大1
+            if (!links(lower, upper)) break;
+            run++;
+            upper = lower;
+        }
+        return run;
+    }
+
+    /**
+     * 判断upper能否与下面的lower组成同花色连续递减的牌组，调用方需保证lower正面朝上
+     */
+    private static boolean links(byte lower, byte upper) {
+        return ((lower ^ upper) & 0x30) == 0 && (lower & 0x0F) == (upper & 0x0F) + 1;
+    }
+
+    /**
+     * 界面适配方法：取得指定位置的牌对应的Card对象
+     * 牌是否正面朝上需要通过isFaceUp(col, index)查询
+     * @return 共享的Card实例
+     */
+    public Card cardAt(int col, int index) {
+        return toCard(get(col, index));
+    }
+
+    /**
+     * @return 剩余牌堆张数
+     */
+    public int stockSize() {
+        return stockSize;
+    }
+
+    /**
+     * @return 牌堆中第index张牌的编码（0为最底部）
+     */
+    public byte stockAt(int index) {
+        return stock[index];
+    }
+
+    /**
+     * @return 当前牌面的64位Zobrist哈希值
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * 不依赖增量结果，按当前内容完整重新计算哈希值
+     * @return 完整计算得到的哈希值
+     */
+    public long recomputeHash() {
+        long h = 0;
+        for (int i = 0; i < COLUMNS; i++) {
+            int base = i * MAX_HEIGHT;
+            for (int j = 0; j < sizes[i]; j++) {
+                h ^= cellKey(base + j, cells[base + j], j >= faceDown[i]);
+            }
+        }
+        for (int j = 0; j < stockSize; j++) {
+            h ^= STOCK_KEYS[(j << 6) | stock[j]];
+        }
+        return h;
+    }
+
+    /**
+     * 校验增量维护的哈希值与完整重算的结果一致
+     * @throws IllegalStateException 两者不一致时
+     */
+    public void verifyHash() {
+        long expected = recomputeHash();
+        if (expected != hash) {
+            throw new IllegalStateException("Zobrist哈希不一致: 增量值=" + Long.toHexString(hash)
+                    + ", 重算值=" + Long.toHexString(expected));
+        }
+    }
+
+    /**
+     * 两个牌面的所有牌列和牌堆完全相同时相等
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Board)) return false;
+        Board other = (Board) o;
+        if (hash != other.hash || stockSize != other.stockSize) return false;
+        for (int i = 0; i < COLUMNS; i++) {
+            if (sizes[i] != other.sizes[i] || faceDown[i] != other.faceDown[i]) return false;
+            int base = i * MAX_HEIGHT;
+            for (int j = 0; j < sizes[i]; j++) {
+                if (cells[base + j] != other.cells[base + j]) return false;
+            }
+        }
+        for (int j = 0; j < stockSize; j++) {
+            if (stock[j] != other.stock[j]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * 校验每列的暗牌张数在合法范围内，缓存的可移动牌组长度与逐张扫描的结果一致
+     * @throws IllegalStateException 不一致时
+     */
+    public void verifyMetadata() {
+        for (int i = 0; i < COLUMNS; i++) {
+            if (faceDown[i] < 0 || faceDown[i] > sizes[i] || scanRun(i) != runs[i]) {
+                throw new IllegalStateException("第" + (i + 1) + "列元数据不一致: 暗牌=" + faceDown[i] + "/" + sizes[i]
+                        + ", 牌组=" + runs[i] + "/" + scanRun(i));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // 修改
+    // ---------------------------------------------------------------
+
+    /**
+     * 在指定列顶部放一张牌
+     * @param faceUp 是否正面朝上；暗牌只能放在全是暗牌的列上
+     * @throws IllegalStateException 要在正面朝上的牌上放暗牌
+     */
+    public void push(int col, byte code, boolean faceUp) {
+        if (!faceUp && faceDown[col] != sizes[col]) {
+            throw new IllegalStateException("第" + (col + 1) + "列的明牌上不能再放暗牌");
+        }
+        int cell = col * MAX_HEIGHT + sizes[col]++;
+        dirtyColumns |= 1 << col;
+        modified |= 1 << col;
+        if (!faceUp) {
+            faceDown[col]++;
+            runs[col] = 0;
+        } else if (runs[col] > 0 && links(cells[cell - 1], code)) {
+            runs[col]++;
+        } else {
+            runs[col] = 1;
+        }
+        cells[cell] = code;
+        hash ^= cellKey(cell, code, faceUp);
+    }
+
+    /**
+     * 取走指定列顶部的牌
+     * @return 被取走的牌的编码
+     */
+    public byte pop(int col) {
+        int cell = col * MAX_HEIGHT + --sizes[col];
+        modified |= 1 << col;
+        byte code = cells[cell];
+        hash ^= cellKey(cell, code, faceDown[col] <= sizes[col]);
+        if (faceDown[col] > sizes[col]) faceDown[col] = sizes[col];
+        runs[col] = runs[col] > 1 ? runs[col] - 1 : scanRun(col);
+        return code;
+    }
+
+    /**
+     * 在牌堆顶部放一张牌
+     */
+    public void pushStock(byte code) {
+        hash ^= STOCK_KEYS[(stockSize << 6) | code];
+        stock[stockSize++] = code;
+        modified |= 1 << COLUMNS;
+    }
+
+    /**
+     * 替换一张暗牌，供Determinizer重新分配玩家看不见的牌
+     * 暗牌不属于可移动牌组，替换后可移动牌组长度不变
+     * @throws IllegalArgumentException 指定位置不是暗牌
+     */
+    void replaceHidden(int col, int index, byte code) {
+        if (index < 0 || index >= faceDown[col]) {
+            throw new IllegalArgumentException("第" + (col + 1) + "列第" + (index + 1) + "张不是暗牌");
+        }
+        int cell = col * MAX_HEIGHT + index;
+        hash ^= cellKey(cell, cells[cell], false) ^ cellKey(cell, code, false);
+        cells[cell] = code;
+        modified |= 1 << col;
+    }
+
+    /**
+     * 替换牌堆中的一张牌，供Determinizer重新分配玩家看不见的牌
+     */
+    void replaceStock(int index, byte code) {
+        hash ^= STOCK_KEYS[(index << 6) | stock[index]] ^ STOCK_KEYS[(index << 6) | code];
+        stock[index] = code;
+        modified |= 1 << COLUMNS;
+    }
+
+    /**
+     * 将源列顶部的count张牌整体移到目标列顶部，保持顺序不变
+     * 不做规则检查，调用方负责保证合法；移动的牌必须都是正面朝上
+     */
+    public void moveCards(int from, int to, int count) {
+        int srcStart = from * MAX_HEIGHT + sizes[from] - count;
+        int dstStart = to * MAX_HEIGHT + sizes[to];
+        long h = hash;
+        for (int k = 0; k < count; k++) {
+            byte code = cells[srcStart + k];
+            h ^= faceUpKey(srcStart + k, code) ^ faceUpKey(dstStart + k, code);
+        }
+        hash = h;
+
+        // 目标列：移入的牌组整体接在原顶牌上时累加长度，否则只算移入部分顶端的牌组
+        int movedRun = Math.min(count, runs[from]);
+        if (movedRun == count && runs[to] > 0 && links(cells[dstStart - 1], cells[srcStart])) {
+            runs[to] += count;
+        } else {
+            runs[to] = movedRun;
+        }
+
+        System.arraycopy(cells, srcStart, cells, dstStart, count);
+        dirtyColumns |= 1 << to;
+        modified |= 1 << from | 1 << to;
+        sizes[from] -= count;
+        sizes[to] += count;
+
+        // 源列：只移走了牌组的一部分时直接相减，否则重新扫描新的列顶
+        if (faceDown[from] > sizes[from]) faceDown[from] = sizes[from];
+        runs[from] = count < runs[from] ? runs[from] - count : scanRun(from);
+    }
+
+    /**
+     * 如果指定列顶部的牌背面朝上，将其翻成正面
+     * @return 是否发生了翻牌
+     */
+    public boolean revealTop(int col) {
+        if (sizes[col] == 0 || faceDown[col] < sizes[col]) return false;
+        int index = col * MAX_HEIGHT + sizes[col] - 1;
+        hash ^= FACE_KEYS[index];
+        faceDown[col]--;
+        modified |= 1 << col;
+        runs[col] = 1;
+        return true;
+    }
+
+    /**
+     * 将指定列顶部的牌翻回背面，用于撤销翻牌
+     */
+    public void hideTop(int col) {
+        int index = col * MAX_HEIGHT + sizes[col] - 1;
+        hash ^= FACE_KEYS[index];
+        faceDown[col]++;
+        modified |= 1 << col;
+        runs[col] = 0;
+    }
+
+    /**
+     * 从牌堆给每列发一张正面朝上的牌，第1列先发
+     * 调用方需保证牌堆至少有10张牌
+     */
+    public void dealRow() {
+        modified |= 1 << COLUMNS;
+        for (int i = 0; i < COLUMNS; i++) {
+            byte code = stock[--stockSize];
+            hash ^= STOCK_KEYS[(stockSize << 6) | code];
+            push(i, code, true);
+        }
+    }
+
+    /**
+     * 撤销发牌：按逆序把每列顶部的牌放回牌堆
+     */
+    public void undealRow() {
+        for (int i = COLUMNS - 1; i >= 0; i--) {
+            pushStock(pop(i));
+        }
+    }
+
+    /**
+     * 移除指定列顶部的13张牌（一组完整的K到A）
+     * 不做检查，调用方负责保证顶部是完整牌组
+     */
+    public void removeRun(int col) {
+        int end = col * MAX_HEIGHT + sizes[col];
+        for (int cell = end - 13; cell < end; cell++) {
+            hash ^= faceUpKey(cell, cells[cell]);
+        }
+        sizes[col] -= 13;
+        modified |= 1 << col;
+        if (faceDown[col] > sizes[col]) faceDown[col] = sizes[col];
+        runs[col] = scanRun(col);
+    }
+
+    /**
+     * 将一组指定花色的K到A正面朝上放回指定列顶部，用于撤销牌组移除
+     * @param suit 花色序号
+     */
+    public void restoreRun(int col, int suit) {
+        for (int rank = 13; rank >= 1; rank--) {
+            push(col, (byte) ((suit << 4) | rank), true);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package game;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 求解预算
+ *
+ * 描述一次求解最多可以使用的资源，不同的调用方需要的延迟不同：
+ * 提示按钮要在几百毫秒内给出答案，离线分析可以运行几分钟
+ * - 时间：从开始求解算起的最长时间
+ * - 节点：最多展开的节点数，所有迭代合计
+ * - 内存：置换表最多占用的直接内存
+ * - 取消条件：可以由其他线程改变，返回true时尽快停止
+ *
+ * 未设置的项不受限制（内存未设置时按求解器构造时的参数确定）
+ * 预算不可变，with方法返回新的预算，可以在多个线程中共享
+ * 例如 Budget.millis(200).withNodes(500_000)
+ */
+public final class Budget {
+    /**
+     * 不限制时间时使用的时间上限（纳秒），约146年，加上System.nanoTime()也不会溢出
+     */
+    private static final long NO_TIME_LIMIT = Long.MAX_VALUE / 2;
+
+    private static final Budget UNLIMITED = new Budget(NO_TIME_LIMIT, Long.MAX_VALUE, 0, null);
+
+    private final long timeLimitNanos;
+    private final long maxNodes;
+    private final long memoryMegabytes;
+    private final BooleanSupplier cancelled;
+
+    private Budget(long timeLimitNanos, long maxNodes, long memoryMegabytes, BooleanSupplier cancelled) {
+        if (timeLimitNanos < 0) throw new IllegalArgumentException("时间上限不能为负数: " + timeLimitNanos);
+        if (maxNodes < 0) throw new IllegalArgumentException("节点上限不能为负数: " + maxNodes);
+        if (memoryMegabytes < 0) throw new IllegalArgumentException("内存上限不能为负数: " + memoryMegabytes);
+        this.timeLimitNanos = timeLimitNanos;
+        this.maxNodes = maxNodes;
+        this.memoryMegabytes = memoryMegabytes;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * @return 不受任何限制的预算，只能通过取消条件停止
+     */
+    public static Budget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * @param millis 最长时间（毫秒）
+     * @return 只限制时间的预算
+     */
+    public static Budget millis(long millis) {
+        return UNLIMITED.withMillis(millis);
+    }
+
+    /**
+     * @param maxNodes 最多展开的节点数
+     * @return 只限制节点数的预算
+     */
+    public static Budget nodes(long maxNodes) {
+        return UNLIMITED.withNodes(maxNodes);
+    }
+
+    /**
+     * @param megabytes 置换表最多占用的直接内存（MB）
+     * @return 只限制内存的预算
+     */
+    public static Budget memory(long megabytes) {
+        return UNLIMITED.withMemory(megabytes);
+    }
+
+    /**
+     * @param millis 最长时间（毫秒）
+     * @return 时间上限改为millis的新预算
+     */
+    public Budget withMillis(long millis) {
+        return new Budget(Math.min(millis, NO_TIME_LIMIT / 1_000_000L) * 1_000_000L, maxNodes, memoryMegabytes, cancelled);
+    }
+
+    /**
+     * @param maxNodes 最多展开的节点数
+     * @return 节点上限改为maxNodes的新预算
+     */
+    public Budget withNodes(long maxNodes) {
+        return new Budget(timeLimitNanos, maxNodes, memoryMegabytes, cancelled);
+    }
+
+    /**
+     * @param megabytes 置换表最多占用的直接内存（MB），实际大小向下取整到2的幂
+     * @return 内存上限改为megabytes的新预算
+     */
+    public Budget withMemory(long megabytes) {
+        return new Budget(timeLimitNanos, maxNodes, megabytes, cancelled);
+    }
+
+    /**
+     * @param cancelled 取消条件，返回true时尽快停止；null表示不会被取消
+     * @return 取消条件改为cancelled的新预算
+     */
+    public Budget withCancel(BooleanSupplier cancelled) {
+        return new Budget(timeLimitNanos, maxNodes, memoryMegabytes, cancelled);
+    }
+
+    /**
+     * @return 最长时间（纳秒），不限制时为一个足够大的值
+     */
+    public long timeLimitNanos() {
+        return timeLimitNanos;
+    }
+
+    /**
+     * @return 最多展开的节点数，不限制时为Long.MAX_VALUE
+     */
+    public long maxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @return 置换表最多占用的直接内存（MB），0表示不限制
+     */
+    public long memoryMegabytes() {
+        return memoryMegabytes;
+    }
+
+    /**
+     * @return 取消条件，可能为null
+     */
+    public BooleanSupplier cancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return "Budget{time=" + (timeLimitNanos >= NO_TIME_LIMIT ? "-" : timeLimitNanos / 1_000_000L + "ms")
+                + ", nodes=" + (maxNodes == Long.MAX_VALUE ? "-" : String.valueOf(maxNodes))
+                + ", memory=" + (memoryMegabytes == 0 ? "-" : memoryMegabytes + "MB") + "}";
+    }
+}
@@ -0,0 +1,162 @@
+package game;
+
+/**
+ * 局面的规范键
+ *
+ * 求解时10个牌列的先后顺序无关紧要，双花色牌局中两种花色也可以互换，
+ * 只在列的顺序或花色名称上不同的局面胜负相同，置换表用规范键代替Board.hash()后可以把它们当作同一个局面
+ *
+ * 计算方法：
+ * - 每列计算一个64位签名：列中每个（位置，牌）、暗牌张数，以及以后每次发牌将发到这一列的牌
+ *   （牌堆顶部的牌先发给第1列，牌堆中第j张牌发到哪一列只由j和牌堆张数决定）
+ * - 把10个签名分别混合后相加得到一个键，加法与列的顺序无关，不需要排序
+ * - 双花色时再按两种花色互换后的牌计算一次，取两者中较小的键
+ *
+ * 列签名只使用与列号无关的随机数，因此相同内容的列在任何位置都得到相同的签名
+ *
+ * 搜索中每一步只改变一两列，实例缓存上一次计算的牌面的各列签名，
+ * 对同一个牌面再次计算时通过Board.takeModified()只重新计算有变化的列，
+ * 因此会取走牌面的修改标记，不能用于还要创建快照的牌面（例如GameState中的牌面）
+ * 一个实例只能在一个线程中使用，并且只用于同一份牌堆
+ */
+public final class CanonicalKey {
+    /**
+     * 列中第j张牌为某张牌（低6位编码）时的随机数
+     */
+    private static final long[] CELL_KEYS = new long[Board.MAX_HEIGHT * 64];
+
+    /**
+     * 列中暗牌张数对应的随机数
+     */
+    private static final long[] FACE_DOWN_KEYS = new long[Board.MAX_HEIGHT + 1];
+
+    /**
+     * 第r次发牌发到这一列的牌对应的随机数
+     */
+    private static final long[] DEAL_KEYS = new long[(Board.MAX_STOCK / Board.COLUMNS) * 64];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < CELL_KEYS.length; i++) CELL_KEYS[i] = seed = next(seed);
+        for (int i = 0; i < FACE_DOWN_KEYS.length; i++) FACE_DOWN_KEYS[i] = seed = next(seed);
+        for (int i = 0; i < DEAL_KEYS.length; i++) DEAL_KEYS[i] = seed = next(seed);
+    }
+
+    private static long next(long x) {
+        long z = x + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 是否把两种花色（序号0和1）互换后的局面视为同一局面
+     */
+    private final boolean swapSuits;
+
+    /**
+     * 上一次计算的牌面，再次传入同一个牌面时只重新计算有变化的列
+     */
+    private Board tracked;
+
+    /**
+     * 每列不含牌堆部分的签名，以及花色互换后的签名
+     */
+    private final long[] columnSignatures = new long[Board.COLUMNS];
+    private final long[] columnSwapped = new long[Board.COLUMNS];
+
+    /**
+     * 牌堆签名缓存：同一次求解中牌堆只会从顶部发出或放回，
+     * 牌堆的内容完全由张数决定，第k项为牌堆剩k*10张时每列将收到的牌的签名
+     */
+    private final long[][] stockSignatures = new long[Board.MAX_STOCK / Board.COLUMNS + 1][];
+    private final long[][] stockSwapped = new long[Board.MAX_STOCK / Board.COLUMNS + 1][];
+
+    /**
+     * @param swapSuits 是否把花色0和1互换后的局面视为同一局面，只适用于双花色牌局
+     */
+    public CanonicalKey(boolean swapSuits) {
+        this.swapSuits = swapSuits;
+    }
+
+    /**
+     * @param difficulty 游戏难度，双花色时互换花色
+     * @return 适用于该难度的规范键计算器
+     */
+    public static CanonicalKey forDifficulty(int difficulty) {
+        return new CanonicalKey(difficulty == 2);
+    }
+
+    /**
+     * 计算牌面的规范键
+     * @param board 牌面，牌堆内容必须与之前传入的牌面一致（只是张数不同）
+     * @return 64位规范键，列顺序不同（以及双花色时花色互换）的等价局面得到相同的键
+     */
+    public long of(Board board) {
+        int modified = board.takeModified();
+        if (board != tracked) {
+            tracked = board;
+            modified = Board.MODIFIED_ALL;
+        }
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            if ((modified & 1 << col) != 0) computeColumn(board, col);
+        }
+
+        int rounds = board.stockSize() / Board.COLUMNS;
+        long[] stock = stockSignatures[rounds];
+        if (stock == null) stock = computeStock(board, rounds);
+        long key = 0;
+        for (int col = 0; col < Board.COLUMNS; col++) key += mix(columnSignatures[col] ^ stock[col]);
+        if (!swapSuits) return key;
+
+        long[] stockSwap = stockSwapped[rounds];
+        long alt = 0;
+        for (int col = 0; col < Board.COLUMNS; col++) alt += mix(columnSwapped[col] ^ stockSwap[col]);
+        return Math.min(key, alt);
+    }
+
+    /**
+     * 重新计算一列不含牌堆部分的签名
+     */
+    private void computeColumn(Board board, int col) {
+        int size = board.size(col);
+        long sig = FACE_DOWN_KEYS[board.faceDownCount(col)];
+        long alt = sig;
+        for (int j = 0; j < size; j++) {
+            int code = board.get(col, j);
+            sig ^= CELL_KEYS[(j << 6) | code];
+            if (swapSuits) alt ^= CELL_KEYS[(j << 6) | (code ^ 0x10)];
+        }
+        columnSignatures[col] = sig;
+        columnSwapped[col] = alt;
+    }
+
+    /**
+     * 计算并缓存牌堆剩rounds*10张时，每列将收到的牌的签名
+     */
+    private long[] computeStock(Board board, int rounds) {
+        long[] stock = new long[Board.COLUMNS];
+        long[] swap = new long[Board.COLUMNS];
+        int size = board.stockSize();
+        for (int j = 0; j < size; j++) {
+            // 从牌堆顶部数第k张牌在第k/10次发牌时发到第k%10列
+            int k = size - 1 - j;
+            int code = board.stockAt(j);
+            int round = k / Board.COLUMNS;
+            stock[k % Board.COLUMNS] ^= DEAL_KEYS[(round << 6) | code];
+            swap[k % Board.COLUMNS] ^= DEAL_KEYS[(round << 6) | (code ^ 0x10)];
+        }
+        stockSignatures[rounds] = stock;
+        stockSwapped[rounds] = swap;
+        return stock;
+    }
+
+    /**
+     * 列签名的混合函数，使各列签名相加后仍然分布均匀
+     */
+    private static long mix(long sig) {
+        sig = (sig ^ (sig >>> 33)) * 0xFF51AFD7ED558CCDL;
+        sig = (sig ^ (sig >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return sig ^ (sig >>> 33);
+    }
+}
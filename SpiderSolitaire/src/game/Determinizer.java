@@ -0,0 +1,159 @@
+package game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 局面抽样器
+ *
+ * 玩家只能看到正面朝上的牌，暗牌和牌堆中的牌是未知的。
+ * 抽样器把所有看不见的牌随机重新分配到看不见的位置上，得到一个与玩家所见一致的完整局面：
+ * - 正面朝上的牌、每列的暗牌张数、牌堆张数都保持不变
+ * - 看不见的牌的集合保持不变：整副牌的组成是已知的，减去看得见的牌和已经移除的牌组，
+ *   剩下的正是暗牌和牌堆中的牌，因此重新分配不会泄露玩家不知道的信息
+ *
+ * 用于蒙特卡洛模拟等需要在“可能的真实局面”上推演的场景
+ *
+ * 局面变化后，之前的抽样可以修补而不必重新抽样（见repair）：暗牌不会移动，只会被翻开，
+ * 牌堆只从顶部发出，因此新局面中看不见的位置大多在旧抽样中也是看不见的，
+ * 这些位置沿用旧抽样的牌，只有与新看到的牌冲突的位置才重新分配
+ *
+ * 一个实例带有缓冲区，只能在一个线程中使用；随机数生成器由调用方提供，多线程时每个线程使用自己的生成器
+ */
+public final class Determinizer {
+    /**
+     * 看不见的牌的缓冲区
+     */
+    private final byte[] hidden = new byte[Board.COLUMNS * Board.MAX_HEIGHT + Board.MAX_STOCK];
+
+    /**
+     * 修补时还没有分配牌的位置：非负数为牌列中的下标（col * MAX_HEIGHT + index），负数-1-j为牌堆第j张
+     */
+    private final int[] slots = new int[Board.COLUMNS * Board.MAX_HEIGHT + Board.MAX_STOCK];
+
+    /**
+     * 每种牌（按编码）还剩多少张没有分配
+     */
+    private final int[] pool = new int[64];
+
+    /**
+     * 在原牌面上重新分配看不见的牌
+     * @param board 要重新分配的牌面，哈希值随之更新
+     * @param random 随机数生成器
+     */
+    public void shuffle(Board board, SplittableRandom random) {
+        Arrays.fill(pool, 0);
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int down = board.faceDownCount(col);
+            for (int i = 0; i < down; i++) pool[board.get(col, i)]++;
+        }
+        int stockSize = board.stockSize();
+        for (int i = 0; i < stockSize; i++) pool[board.stockAt(i)]++;
+        drawPool(random);
+
+        int n = 0;
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int down = board.faceDownCount(col);
+            for (int i = 0; i < down; i++) board.replaceHidden(col, i, hidden[n++]);
+        }
+        for (int i = 0; i < stockSize; i++) board.replaceStock(i, hidden[n++]);
+    }
+
+    /**
+     * 把pool中剩下的牌按编码顺序展开到hidden中再随机打乱（Fisher-Yates）
+     * 先按编码展开而不是按原来的位置收集，抽样结果只取决于看不见的牌的集合和随机数，与真实的排列无关
+     * @return 牌的张数
+     */
+    private int drawPool(SplittableRandom random) {
+        int n = 0;
+        for (int code = 0; code < pool.length; code++) {
+            for (int k = 0; k < pool[code]; k++) hidden[n++] = (byte) code;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte t = hidden[i];
+            hidden[i] = hidden[j];
+            hidden[j] = t;
+        }
+        return n;
+    }
+
+    /**
+     * 抽样一个与玩家所见一致的游戏状态
+     * 抽样得到的局面不再是原来的牌局，牌局编号取一个随机数，计分信息与原状态相同，撤销记录为空
+     * @param state 原游戏状态，不会被修改
+     * @param random 随机数生成器
+     * @return 新的游戏状态
+     */
+    public GameState sample(GameState state, SplittableRandom random) {
+        GameState copy = new GameState(state.difficulty, random.nextLong(), state.board);
+        copy.score = state.score;
+        copy.completedSets = state.completedSets;
+        copy.remainingDeals = state.remainingDeals;
+        shuffle(copy.board, random);
+        return copy;
+    }
+
+    /**
+     * 把旧的抽样修补为与新局面一致的抽样
+     * 新局面中每个看不见的位置，如果在旧抽样中也是看不见的，并且旧抽样在这里的牌还没有被分配完，就沿用这张牌；
+     * 其余位置用剩下的牌随机分配。玩家照常走牌且新翻开的牌与抽样的预测相同时，抽样完全不变
+     * @param previous 旧的抽样，不会被修改
+     * @param state 新的游戏状态，不会被修改
+     * @param random 随机数生成器
+     * @return 与新局面一致的抽样，牌局编号沿用旧抽样的编号，计分信息与新状态相同，撤销记录为空
+     */
+    public GameState repair(GameState previous, GameState state, SplittableRandom random) {
+        GameState copy = new GameState(state.difficulty, previous.dealNumber, state.board);
+        copy.score = state.score;
+        copy.completedSets = state.completedSets;
+        copy.remainingDeals = state.remainingDeals;
+        Board board = copy.board;
+        Board old = previous.board;
+
+        // 看不见的牌的集合取自新局面
+        Arrays.fill(pool, 0);
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int down = board.faceDownCount(col);
+            for (int i = 0; i < down; i++) pool[board.get(col, i)]++;
+        }
+        int stockSize = board.stockSize();
+        for (int i = 0; i < stockSize; i++) pool[board.stockAt(i)]++;
+
+        int n = 0;
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int down = board.faceDownCount(col);
+            int oldDown = old.faceDownCount(col);
+            for (int i = 0; i < down; i++) {
+                if (i < oldDown && pool[old.get(col, i)] > 0) {
+                    byte code = old.get(col, i);
+                    pool[code]--;
+                    board.replaceHidden(col, i, code);
+                } else {
+                    slots[n++] = col * Board.MAX_HEIGHT + i;
+                }
+            }
+        }
+        for (int j = 0; j < stockSize; j++) {
+            if (j < old.stockSize() && pool[old.stockAt(j)] > 0) {
+                byte code = old.stockAt(j);
+                pool[code]--;
+                board.replaceStock(j, code);
+            } else {
+                slots[n++] = -1 - j;
+            }
+        }
+
+        // 剩下的牌随机分配到剩下的位置
+        drawPool(random);
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            if (slot >= 0) {
+                board.replaceHidden(slot / Board.MAX_HEIGHT, slot % Board.MAX_HEIGHT, hidden[i]);
+            } else {
+                board.replaceStock(-1 - slot, hidden[i]);
+            }
+        }
+        return copy;
+    }
+}
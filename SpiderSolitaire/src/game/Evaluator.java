@@ -0,0 +1,31 @@
+package game;
+
+/**
+ * 局面评估函数
+ *
+ * 给局面一个整数评分，分数越高表示离获胜越近，用于启发式搜索在没有得出结论时比较局面的好坏：
+ * 求解器按预算求解时用它挑选进展最好的路线，模拟策略用它比较一步之后的局面
+ *
+ * 评估函数在搜索的每个节点都会调用，实现应当只读取牌面上O(1)的每列元数据，不分配对象；
+ * 同一个实例可能被多个线程同时使用，实现必须是无状态或不可变的
+ * 默认实现见WeightedEvaluator
+ */
+public interface Evaluator {
+    /**
+     * 评估局面
+     * @param board 牌面，不能被修改
+     * @param completedSets 已完成的牌组数
+     * @param remainingDeals 剩余发牌次数
+     * @return 局面评分，越高越好
+     */
+    int evaluate(Board board, int completedSets, int remainingDeals);
+
+    /**
+     * 评估游戏状态中的局面
+     * @param state 游戏状态，不会被修改
+     * @return 局面评分，越高越好
+     */
+    default int evaluate(GameState state) {
+        return evaluate(state.board, state.completedSets, state.remainingDeals);
+    }
+}
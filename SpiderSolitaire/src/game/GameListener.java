@@ -0,0 +1,40 @@
+package game;
+
+/**
+ * 游戏事件监听器
+ *
+ * SpiderGame在每次成功执行玩家操作后通知监听器，用于自动保存等需要跟踪对局过程的功能
+ * 回调在执行操作的线程（通常是事件分发线程）中同步调用，实现必须足够快，不能做阻塞I/O
+ * 通过SpiderGame.replay重放的操作不会触发回调；重做与玩家操作一样触发对应的回调
+ */
+public interface GameListener {
+    /**
+     * 移动了牌
+     * @param from 源列
+     * @param to 目标列
+     * @param count 张数
+     */
+    void moved(int from, int to, int count);
+
+    /**
+     * 发了一次牌
+     */
+    void dealt();
+
+    /**
+     * 移除了一组完整的K到A，分数已经加上
+     * @param column 牌组所在的列
+     */
+    void setRemoved(int column);
+
+    /**
+     * 撤销了一步操作
+     */
+    void undone();
+
+    /**
+     * 跳转到了时间线上的另一个位置，局面可能整体改变，需要重新记录完整的局面
+     * @see SpiderGame#seek(int)
+     */
+    void jumped();
+}
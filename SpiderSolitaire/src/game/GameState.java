@@ -1,39 +1,37 @@
 package game;
 
-import java.io.Serializable;
-import java.util.*;
 import model.Card;
 import model.Deck;
 
 /**
  * 游戏状态管理类
  * 负责维护蜘蛛纸牌游戏的所有状态信息
- * 实现Serializable接口以支持对象序列化，用于保存游戏状态
+ * 存档和自动保存由SaveManager编码为紧凑的二进制记录，不使用Java对象序列化
  */
-public class GameState implements Serializable {
+public class GameState {
     /**
-     * 游戏牌列数组，共10列，用于存放玩家手中的牌
-     * 每列是一个栈结构，栈顶是可见的牌
+     * 牌面：10个牌列和剩余牌堆
+     * 每张牌用一个字节表示，存放在扁平数组中，详见Board类
      */
-    public Stack<Card>[] columns = new Stack[10]; // 10列
+    public final Board board = new Board();
     
     /**
-     * 牌堆，用于存放还未发到牌列中的剩余牌
-     * 当牌堆为空时就不能再发牌了
+     * 撤销记录，用于存储游戏中的所有操作记录
+     * 支持玩家撤销上一步操作，恢复到之前的状态
+     * 每步操作压缩为一个long，详见UndoLog
      */
-    public Stack<Card> stock = new Stack<>();     // 剩余牌堆
+    public final UndoLog undoLog = new UndoLog();
     
     /**
-     * 撤销操作栈，用于存储游戏中的所有操作记录
-     * 支持玩家撤销上一步操作，恢复到之前的状态
+     * 开局时的分数
      */
-    public Stack<Move> undoStack = new Stack<>();  // 撤销栈
-    
+    public static final int INITIAL_SCORE = 500;
+
     /**
      * 当前游戏分数，初始值为500分
      * 每次有效移动会扣1分，完成牌组会得100分
      */
-    public int score = 500;
+    public int score = INITIAL_SCORE;
     
     /**
      * 已完成的牌组数量，蜘蛛纸牌需要完成8组牌才能获胜
@@ -48,29 +46,103 @@ public class GameState implements Serializable {
     public int remainingDeals = 5;//发牌次数
 
     /**
-     * 游戏状态构造函数
+     * 上一次创建的快照，下一个快照与它共享没有变化的列
+     */
+    private Snapshot lastSnapshot;
+
+    /**
+     * 游戏难度级别：1=单花色，2=双花色，4=四花色
+     */
+    public final int difficulty;
+
+    /**
+     * 牌局编号，与难度一起唯一确定初始牌局
+     */
+    public final long dealNumber;
+
+    /**
+     * 游戏状态构造函数，随机选择牌局
      * @param difficulty 游戏难度级别：1=单花色(简单)，2=双花色(中等)，4=四花色(困难)
      */
     public GameState(int difficulty) {
-        Deck deck = new Deck(difficulty);//"创建一个新的Deck对象实例，并将其赋值给名为deck的变量"。
+        this(difficulty, Deck.randomDealNumber());
+    }
+
+    /**
+     * 游戏状态构造函数
+     * @param difficulty 游戏难度级别：1=单花色(简单)，2=双花色(中等)，4=四花色(困难)
+     * @param dealNumber 牌局编号，相同的编号和难度总是得到相同的初始牌局
+     */
+    public GameState(int difficulty, long dealNumber) {
+        this.difficulty = difficulty;
+        this.dealNumber = dealNumber;
+        Deck deck = new Deck(difficulty, dealNumber);//按牌局编号创建并洗好牌堆
         
         // 初始化10个牌列，前4列各6张牌，后6列各5张牌
         for (int i = 0; i < 10; i++) {
-            columns[i] = new Stack<>();
             // 前4列发6张牌，后6列发5张牌
             for (int j = 0; j < (i < 4 ? 6 : 5); j++) {//内层循环控制每个牌列的发牌数量
                 //Java 中唯一的三目运算符，本质是简化的 if-else,前4列发6张，后四列发5张
                 Card card = deck.draw();
                 // 每列的最底部牌(最后发的牌)需要翻面显示为正面
-                if (j == (i < 4 ? 5 : 4)) card.flip(); // 最底部的牌翻面
-                //判断当前发的是否是该列最后一张牌，如果是则执行 card.flip() 翻面,
-                columns[i].push(card);//将抽到的牌压入当前牌列的栈中push()是栈的 “压栈” 操作，新牌会成为栈顶，即视觉上最上方的牌
+                // 牌本身是共享的不可变对象，朝向由牌列记录，放入牌列时指定
+                boolean faceUp = j == (i < 4 ? 5 : 4);
+                board.push(i, Board.encode(card), faceUp);//将抽到的牌编码为一个字节后放到当前牌列顶部，新牌即视觉上最上方的牌
             }
         }
         
-        // 将牌堆中剩余的牌存入stock中，用于后续发牌
+        // 将牌堆中剩余的牌存入牌堆，用于后续发牌
         while (!deck.isEmpty()) {
-            stock.push(deck.draw());
+            board.pushStock(Board.encode(deck.draw()));
         }
     }
+
+    /**
+     * 从已有的牌面恢复游戏状态，不发牌
+     * 用于读取存档，计分信息和撤销记录由调用方随后填入
+     * @param difficulty 游戏难度级别
+     * @param dealNumber 牌局编号
+     * @param board 要复制的牌面
+     */
+    public GameState(int difficulty, long dealNumber, Board board) {
+        this.difficulty = difficulty;
+        this.dealNumber = dealNumber;
+        this.board.copyFrom(board);
+    }
+
+    /**
+     * 获取当前局面的64位Zobrist哈希值
+     * 由牌面在每次修改时增量维护，可直接用作置换表或提示缓存的键
+     * 计分信息不参与哈希
+     * @return 局面哈希值
+     */
+    public long hash() {
+        return board.hash();
+    }
+
+    /**
+     * 创建当前局面的不可变快照
+     * 只复制自上一个快照以来有变化的列，其余列与上一个快照共享
+     * 必须在修改游戏状态的线程（通常是事件分发线程）中调用，得到的快照可以交给任意线程读取
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        lastSnapshot = new Snapshot(this, lastSnapshot, board.takeModified());
+        return lastSnapshot;
+    }
+
+    /**
+     * 复制构造函数
+     * 复制牌面和计分信息，供求解器等需要私有副本的场景使用
+     * 撤销记录不会被复制，副本从空的操作历史开始
+     * @param other 要复制的游戏状态
+     */
+    public GameState(GameState other) {
+        difficulty = other.difficulty;
+        dealNumber = other.dealNumber;
+        board.copyFrom(other.board);
+        score = other.score;
+        completedSets = other.completedSets;
+        remainingDeals = other.remainingDeals;
+    }
 }
@@ -0,0 +1,349 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 不偷看暗牌的提示
+ *
+ * Solver直接在GameState上搜索，能看到暗牌和牌堆的顺序，对玩家来说等于作弊。
+ * 这里只使用玩家看得见的信息：
+ * - 用Determinizer抽样若干个与玩家所见一致的可能局面，在线程池中分别用Solver按预算求解
+ * - 汇总各个抽样的结果：优先选择在最多抽样中能获胜的第一步，其次选择被最多抽样建议的第一步
+ *
+ * 抽样和结果在相邻的提示之间缓存：
+ * - 局面变化后，旧的抽样用Determinizer.repair修补为与新局面一致的抽样，而不是重新抽样
+ * - 每个抽样记录沿其路线每一步之后的牌面哈希值，玩家照着路线走、且新翻开的牌与抽样一致时，
+ *   修补后的抽样正好是路线上的某个局面，直接截取剩余的路线，不必重新搜索
+ * - 得出结论的结果一直有效（没有找到获胜路线的结论只对同一个局面有效）；
+ *   没有得出结论的结果只在当时展开的节点数不小于本次预算时复用
+ * 因此连续请求提示时，大部分抽样都不需要重新搜索
+ *
+ * 换了一局（难度或牌局编号不同）时丢弃所有缓存
+ * suggest同一时刻只能在一个线程中调用；内部的线程池为守护线程，不再使用时应调用shutdown()
+ */
+public class InformationSetHint {
+    /**
+     * 默认的抽样数量
+     */
+    public static final int DEFAULT_SAMPLES = 16;
+
+    /**
+     * 提示结果
+     * from == -1 表示建议发牌，from == -2 表示没有任何可用移动
+     */
+    public static final class Suggestion {
+        public final int from;
+        public final int to;
+        public final int count;
+        /**
+         * 抽样数量
+         */
+        public final int samples;
+        /**
+         * 沿建议的第一步可以获胜的抽样数量
+         */
+        public final int wins;
+        /**
+         * 搜索完毕仍没有找到获胜路线的抽样数量
+         */
+        public final int noWins;
+        /**
+         * 直接复用缓存结果、没有重新搜索的抽样数量
+         */
+        public final int reused;
+        /**
+         * 本次重新搜索展开的节点数
+         */
+        public final long nodes;
+
+        Suggestion(int from, int to, int count, int samples, int wins, int noWins, int reused, long nodes) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.samples = samples;
+            this.wins = wins;
+            this.noWins = noWins;
+            this.reused = reused;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return 是否带有可执行的建议移动（包括发牌）
+         */
+        public boolean hasMove() {
+            return from != -2;
+        }
+
+        /**
+         * @return 建议的操作是否为发牌
+         */
+        public boolean isDeal() {
+            return from == -1;
+        }
+
+        /**
+         * @return 显示给玩家的提示信息
+         */
+        public String message() {
+            if (noWins == samples) {
+                return "在" + samples + "个可能的局面中都没有找到获胜路线，可以考虑撤销或开始新游戏";
+            }
+            if (!hasMove()) {
+                return "没有可用的移动提示";
+            }
+            String suffix = wins > 0 ? "（在" + samples + "个可能的局面中有" + wins + "个可以沿此获胜）" : "";
+            if (isDeal()) {
+                return "提示: 现在发牌" + suffix;
+            }
+            return "提示: 可以将第" + (from + 1) + "列的" + count + "张牌移动到第" + (to + 1) + "列" + suffix;
+        }
+    }
+
+    /**
+     * 一个抽样及其求解结果
+     */
+    private static final class Sample {
+        /**
+         * 求解时的抽样局面
+         */
+        final GameState world;
+        final Solver.Result result;
+        /**
+         * 结果可信的节点预算：没有得出结论时为实际展开的节点数（被取消或超时时可能小于当时的预算）
+         */
+        final long nodeBudget;
+        /**
+         * lineHashes[k]为沿结果路线走k步之后的牌面哈希值，lineHashes[0]为world本身
+         */
+        final long[] lineHashes;
+        /**
+         * 抽样自己的随机数生成器，修补时使用
+         */
+        final SplittableRandom random;
+
+        Sample(GameState world, Solver.Result result, long nodeBudget, long[] lineHashes, SplittableRandom random) {
+            this.world = world;
+            this.result = result;
+            this.nodeBudget = nodeBudget;
+            this.lineHashes = lineHashes;
+            this.random = random;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final ThreadLocal<Solver> solvers;
+    private final ThreadLocal<Determinizer> determinizers = ThreadLocal.withInitial(Determinizer::new);
+    private final SplittableRandom master;
+    private final Sample[] samples;
+    private int difficulty;
+    private long dealNumber;
+    private volatile Evaluator evaluator = WeightedEvaluator.DEFAULT;
+
+    /**
+     * 构造函数
+     * @param sampleCount 抽样数量
+     * @param threads 线程数
+     * @param maxSampleNodes 每个抽样最多展开的节点数，用于确定每个线程的置换表大小
+     * @param seed 随机数种子
+     */
+    public InformationSetHint(int sampleCount, int threads, long maxSampleNodes, long seed) {
+        AtomicInteger index = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "hint-sample-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.solvers = ThreadLocal.withInitial(() -> new Solver(maxSampleNodes, 60_000));
+        this.master = new SplittableRandom(seed);
+        this.samples = new Sample[sampleCount];
+    }
+
+    /**
+     * 设置各个抽样求解时挑选最好路线使用的评估函数，默认为WeightedEvaluator.DEFAULT
+     * 应当在第一次suggest之前调用，已经缓存的结果不会因此重新搜索
+     * @param evaluator 评估函数
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * 为当前局面给出提示
+     * 预算对整个提示生效：节点上限平均分给各个抽样，时间上限和取消条件对所有抽样共用
+     * @param state 当前游戏状态，不会被修改，调用期间不能被其他线程修改
+     * @param budget 提示预算
+     * @return 提示结果
+     */
+    public Suggestion suggest(GameState state, Budget budget) {
+        if (state.difficulty != difficulty || state.dealNumber != dealNumber) {
+            Arrays.fill(samples, null);
+            difficulty = state.difficulty;
+            dealNumber = state.dealNumber;
+        }
+
+        long nodeBudget = budget.maxNodes() == Long.MAX_VALUE ? Long.MAX_VALUE
+                : Math.max(1, budget.maxNodes() / samples.length);
+        long deadline = System.nanoTime() + budget.timeLimitNanos();
+        List<Future<Sample>> futures = new ArrayList<>(samples.length);
+        boolean[] reused = new boolean[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            Sample previous = samples[i];
+            SplittableRandom random = previous != null ? previous.random : master.split();
+            int slot = i;
+            futures.add(pool.submit(() -> update(previous, random, state, nodeBudget, deadline, budget, reused, slot)));
+        }
+
+        try {
+            for (int i = 0; i < samples.length; i++) samples[i] = futures.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("提示分析被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("提示分析出错", e.getCause());
+        }
+        return combine(reused);
+    }
+
+    /**
+     * 把一个抽样更新到当前局面：修补或新建抽样，能复用缓存结果时直接截取路线，否则重新求解
+     */
+    private Sample update(Sample previous, SplittableRandom random, GameState state, long nodeBudget,
+                          long deadline, Budget budget, boolean[] reused, int slot) {
+        Determinizer determinizer = determinizers.get();
+        GameState world = previous != null
+                ? determinizer.repair(previous.world, state, random)
+                : determinizer.sample(state, random);
+
+        if (previous != null) {
+            Sample cached = follow(previous, world, nodeBudget, random);
+            if (cached != null) {
+                reused[slot] = true;
+                return cached;
+            }
+        }
+
+        long remaining = Math.max(0, deadline - System.nanoTime());
+        Budget sampleBudget = Budget.nodes(nodeBudget).withMillis(remaining / 1_000_000L)
+                .withCancel(budget.cancelled());
+        Solver solver = solvers.get();
+        solver.setEvaluator(evaluator);
+        Solver.Result result = solver.solve(world, sampleBudget);
+        long spent = result.status == Solver.Status.UNKNOWN ? Math.min(result.nodes, nodeBudget) : nodeBudget;
+        return new Sample(world, result, spent, lineHashes(world, result.line), random);
+    }
+
+    /**
+     * 修补后的抽样如果正好是旧结果路线上的某个局面，并且旧结果仍然可信，就截取剩余的路线
+     * @return 截取后的抽样；不能复用时为null
+     */
+    private static Sample follow(Sample previous, GameState world, long nodeBudget, SplittableRandom random) {
+        Solver.Result old = previous.result;
+        boolean trusted = old.status != Solver.Status.UNKNOWN || previous.nodeBudget >= nodeBudget;
+        if (!trusted) return null;
+
+        long hash = world.board.hash();
+        for (int k = 0; k < previous.lineHashes.length; k++) {
+            if (previous.lineHashes[k] != hash) continue;
+            // 没有找到获胜路线的结论只适用于同一个局面
+            if (k > 0 && old.status == Solver.Status.NO_WIN) return null;
+            List<Solver.Step> rest = old.line.subList(k, old.line.size());
+            Solver.Status status = old.status;
+            // 没有获胜的路线走完之后不再有建议，需要重新搜索
+            if (rest.isEmpty() && status != Solver.Status.NO_WIN) return null;
+            Solver.Result result = k == 0 ? old : shift(old, rest);
+            long[] hashes = Arrays.copyOfRange(previous.lineHashes, k, previous.lineHashes.length);
+            return new Sample(world, result, previous.nodeBudget, hashes, random);
+        }
+        return null;
+    }
+
+    /**
+     * @return 以rest为路线、rest的第一步为建议的结果，不计节点数
+     */
+    private static Solver.Result shift(Solver.Result old, List<Solver.Step> rest) {
+        Solver.Step first = rest.get(0);
+        return new Solver.Result(old.status, first.from, first.to, first.count, 0, old.tableStats, rest, 0);
+    }
+
+    /**
+     * 在抽样局面的副本上沿路线走一遍，记录每一步之后的牌面哈希值
+     */
+    private static long[] lineHashes(GameState world, List<Solver.Step> line) {
+        long[] hashes = new long[line.size() + 1];
+        GameState copy = new GameState(world.difficulty, world.dealNumber, world.board);
+        copy.completedSets = world.completedSets;
+        copy.remainingDeals = world.remainingDeals;
+        SpiderGame game = new SpiderGame(copy, false);
+        hashes[0] = copy.board.hash();
+        for (int k = 0; k < line.size(); k++) {
+            Solver.Step step = line.get(k);
+            if (step.isDeal()) {
+                game.deal();
+            } else {
+                game.move(step.from, step.to, step.count);
+            }
+            game.checkAndRemoveCompleteSets();
+            hashes[k + 1] = copy.board.hash();
+        }
+        return hashes;
+    }
+
+    /**
+     * 汇总各个抽样的结果
+     */
+    private Suggestion combine(boolean[] reused) {
+        List<int[]> moves = new ArrayList<>(); // {from, to, count, 获胜数, 建议数}
+        int noWins = 0;
+        int reusedCount = 0;
+        long nodes = 0;
+        for (int i = 0; i < samples.length; i++) {
+            Solver.Result result = samples[i].result;
+            if (reused[i]) {
+                reusedCount++;
+            } else {
+                nodes += result.nodes;
+            }
+            if (result.status == Solver.Status.NO_WIN) {
+                noWins++;
+                continue;
+            }
+            if (!result.hasMove()) continue;
+            int[] entry = null;
+            for (int[] m : moves) {
+                if (m[0] == result.from && m[1] == result.to && m[2] == result.count) {
+                    entry = m;
+                    break;
+                }
+            }
+            if (entry == null) {
+                entry = new int[]{result.from, result.to, result.count, 0, 0};
+                moves.add(entry);
+            }
+            if (result.status == Solver.Status.WIN) entry[3]++;
+            entry[4]++;
+        }
+
+        int[] best = null;
+        for (int[] m : moves) {
+            if (best == null || m[3] > best[3] || (m[3] == best[3] && m[4] > best[4])) best = m;
+        }
+        if (best == null) return new Suggestion(-2, -2, 0, samples.length, 0, noWins, reusedCount, nodes);
+        return new Suggestion(best[0], best[1], best[2], samples.length, best[3], noWins, reusedCount, nodes);
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
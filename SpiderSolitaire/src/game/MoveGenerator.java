@@ -0,0 +1,111 @@
+package game;
+
+/**
+ * 合法移动生成器
+ *
+ * 把当前局面的所有合法操作写入调用方提供的int数组，生成过程不创建任何对象：
+ * - 每列只计算一次列顶可移动牌组的长度
+ * - 目标列非空时，能接上的张数由两张顶牌的点数差直接得出，不需要逐张检查
+ * - 目标列为空时，可移动牌组的任意长度都合法
+ * - 满足发牌条件时追加一个发牌操作
+ *
+ * 移动编码：低4位为源列，接着4位为目标列，再往上为张数；发牌用DEAL表示
+ * 生成的移动与SpiderGame.canMove的判断完全一致，不做任何剪枝
+ */
+public final class MoveGenerator {
+    /**
+     * 发牌操作的编码
+     */
+    public static final int DEAL = -1;
+
+    /**
+     * 一个局面最多可能产生的操作数，调用方提供的数组至少需要这么长
+     * 每个源列最多向9个目标列各移动1-13张，再加一次发牌
+     */
+    public static final int MAX_MOVES = Board.COLUMNS * (Board.COLUMNS - 1) * 13 + 1;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * 生成指定游戏状态下的所有合法操作
+     * @param state 游戏状态
+     * @param out 输出数组，长度至少为MAX_MOVES
+     * @return 写入的操作数量
+     */
+    public static int generate(GameState state, int[] out) {
+        return generate(state.board, state.remainingDeals, out);
+    }
+
+    /**
+     * 生成指定牌面下的所有合法操作
+     * @param board 牌面
+     * @param remainingDeals 剩余发牌次数
+     * @param out 输出数组，长度至少为MAX_MOVES
+     * @return 写入的操作数量
+     */
+    public static int generate(Board board, int remainingDeals, int[] out) {
+        int n = 0;
+        boolean hasEmpty = false;
+
+        for (int from = 0; from < Board.COLUMNS; from++) {
+            if (board.isEmpty(from)) {
+                hasEmpty = true;
+                continue;
+            }
+            int run = board.movableRun(from);
+            if (run == 0) continue;
+            int top = Board.rank(board.top(from));
+
+            for (int to = 0; to < Board.COLUMNS; to++) {
+                if (to == from) continue;
+                if (board.isEmpty(to)) {
+                    // 空列可以接收可移动牌组的任意一段
+                    for (int count = 1; count <= run; count++) {
+                        out[n++] = encode(from, to, count);
+                    }
+                } else {
+                    // 底牌点数必须比目标列顶牌小1，张数由点数差唯一确定
+                    int count = Board.rank(board.top(to)) - top;
+                    if (count >= 1 && count <= run) {
+                        out[n++] = encode(from, to, count);
+                    }
+                }
+            }
+        }
+
+        // 发牌：需要还有发牌次数、每列都有牌且牌堆足够
+        if (remainingDeals > 0 && !hasEmpty && board.stockSize() >= Board.COLUMNS) {
+            out[n++] = DEAL;
+        }
+        return n;
+    }
+
+    /**
+     * 编码一个移动
+     */
+    public static int encode(int from, int to, int count) {
+        return from | (to << 4) | (count << 8);
+    }
+
+    /**
+     * @return 移动的源列
+     */
+    public static int from(int move) {
+        return move & 0xF;
+    }
+
+    /**
+     * @return 移动的目标列
+     */
+    public static int to(int move) {
+        return (move >> 4) & 0xF;
+    }
+
+    /**
+     * @return 移动的张数
+     */
+    public static int count(int move) {
+        return move >> 8;
+    }
+}
@@ -0,0 +1,305 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程蜘蛛纸牌求解器
+ *
+ * 与Solver使用相同的搜索规则（着法排序、剪枝、深度上限），区别在于：
+ * - 搜索树的前几层拆分成ForkJoin子任务，由线程池中的多个线程同时搜索
+ * - 拆分层以下，每个子任务用自己的SearchWorker做顺序深度优先搜索
+ * - 所有线程共享同一个无锁置换表，一个线程搜索过的局面其他线程不会再搜索
+ * - 任意线程找到获胜路线后设置停止标志，其余线程尽快退出
+ *
+ * 节点数和时间限制对所有线程合计生效
+ * 按预算求解（solve(GameState, Budget)）时与Solver一样可以随时停止或被取消：
+ * 每个子任务记录从根节点出发进展评分（见Evaluator）最高的路线，结束时取所有子任务中最好的一条
+ *
+ * 求解器持有一个线程池和一张堆外置换表，不再使用时应调用shutdown()
+ * 置换表在第一次求解时分配，之后每次求解清空复用；同一个求解器不能被多个线程同时调用
+ */
+public class ParallelSolver {
+    /**
+     * 拆分成子任务的层数，根节点为第0层
+     * 两层通常能产生数百个子任务，足以让16个线程保持忙碌
+     */
+    private static final int SPLIT_DEPTH = 2;
+
+    /**
+     * 未指定置换表大小时按节点数估算，估算结果的上限（MB）
+     */
+    private static final long DEFAULT_TABLE_MB = 256;
+
+    private static final long MEGABYTE = 1L << 20;
+
+    private final ForkJoinPool pool;
+    private final long maxNodes;
+    private final long timeLimitNanos;
+    private final long tableMegabytes;
+    private TranspositionTable table;
+
+    /**
+     * 置换表是否按构造时的参数分配，按预算中的内存上限分配后为false
+     */
+    private boolean defaultTable;
+
+    /**
+     * 置换表是否以规范键为键，见Solver.setCanonical
+     */
+    private boolean canonical = true;
+
+    /**
+     * 按预算求解时比较局面进展使用的评估函数
+     */
+    private Evaluator evaluator = WeightedEvaluator.DEFAULT;
+
+    /**
+     * 构造函数，置换表大小按节点数估算
+     * @param threads 搜索线程数
+     * @param maxNodes 所有线程合计最多展开的节点数
+     * @param timeLimitMillis 最长搜索时间（毫秒）
+     */
+    public ParallelSolver(int threads, long maxNodes, long timeLimitMillis) {
+        this(threads, maxNodes, timeLimitMillis, 0);
+    }
+
+    /**
+     * 构造函数
+     * @param threads 搜索线程数
+     * @param maxNodes 所有线程合计最多展开的节点数
+     * @param timeLimitMillis 最长搜索时间（毫秒）
+     * @param tableMegabytes 置换表大小（MB），0表示按节点数估算
+     */
+    public ParallelSolver(int threads, long maxNodes, long timeLimitMillis, long tableMegabytes) {
+        this.pool = new ForkJoinPool(threads);
+        this.maxNodes = maxNodes;
+        this.timeLimitNanos = timeLimitMillis * 1_000_000L;
+        this.tableMegabytes = tableMegabytes;
+    }
+
+    /**
+     * 设置置换表是否以规范键为键，默认开启
+     * @param canonical 是否使用规范键
+     */
+    public void setCanonical(boolean canonical) {
+        this.canonical = canonical;
+    }
+
+    /**
+     * 设置按预算求解时比较局面进展使用的评估函数，见Solver.setEvaluator
+     * @param evaluator 评估函数
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * 求解指定局面
+     * @param state 要求解的游戏状态，不会被修改
+     * @return 求解结果，包含状态和建议的第一步
+     */
+    public Solver.Result solve(GameState state) {
+        prepareTable(0);
+        return search(state.board, state.difficulty, state.completedSets, state.remainingDeals,
+                new SearchControl(table, maxNodes, timeLimitNanos), false);
+    }
+
+    /**
+     * 在预算内求解指定局面，可以随时停止，见Solver.solve(GameState, Budget)
+     * 节点上限对所有线程合计生效；预算中没有限制内存时，置换表大小按构造时的参数确定
+     * @param state 要求解的游戏状态，不会被修改
+     * @param budget 求解预算
+     * @return 求解结果，带有目前最好的路线
+     */
+    public Solver.Result solve(GameState state, Budget budget) {
+        return solve(state.board, state.difficulty, state.completedSets, state.remainingDeals, budget);
+    }
+
+    /**
+     * 在预算内求解快照中的局面，见solve(GameState, Budget)
+     * @param snapshot 要求解的局面快照
+     * @param budget 求解预算
+     * @return 求解结果，带有目前最好的路线
+     */
+    public Solver.Result solve(Snapshot snapshot, Budget budget) {
+        return solve(snapshot.toBoard(), snapshot.difficulty, snapshot.completedSets, snapshot.remainingDeals, budget);
+    }
+
+    private Solver.Result solve(Board board, int difficulty, int completedSets, int remainingDeals, Budget budget) {
+        long start = System.nanoTime();
+        prepareTable(budget.memoryMegabytes());
+        SearchControl control = new SearchControl(table, budget.maxNodes(), budget.timeLimitNanos(), budget.cancelled());
+        control.useEvaluator(evaluator);
+        Solver.Result result = search(board, difficulty, completedSets, remainingDeals, control, true);
+        return new Solver.Result(result.status, result.from, result.to, result.count, result.nodes,
+                result.tableStats, result.line, System.nanoTime() - start);
+    }
+
+    /**
+     * 准备本次求解使用的置换表：第一次求解时分配，之后清空复用，见Solver的同名方法
+     * @param memoryMegabytes 内存上限（MB），与现有的表大小不同时重新分配；0表示按构造时的参数确定
+     */
+    private void prepareTable(long memoryMegabytes) {
+        if (memoryMegabytes > 0) {
+            long bytes = Long.highestOneBit(memoryMegabytes * MEGABYTE);
+            if (table == null || table.sizeInBytes() != bytes) {
+                table = new TranspositionTable(memoryMegabytes);
+                defaultTable = false;
+                return;
+            }
+        } else if (table == null || !defaultTable) {
+            table = tableMegabytes > 0
+                    ? new TranspositionTable(tableMegabytes)
+                    : TranspositionTable.forEntries(maxNodes, DEFAULT_TABLE_MB);
+            defaultTable = true;
+            return;
+        }
+        table.clear();
+    }
+
+    /**
+     * 用线程池搜索
+     * @param trace 是否记录最好路线
+     */
+    private Solver.Result search(Board board, int difficulty, int completedSets, int remainingDeals,
+                                 SearchControl control, boolean trace) {
+        if (canonical) control.useCanonicalKeys(difficulty);
+
+        // 根节点排序后的第一个候选移动，搜索未完成时作为退路
+        SearchWorker probe = new SearchWorker(control, board, completedSets, remainingDeals);
+        int rootCount = probe.generateMoves(0);
+        int fallback = rootCount > 0 ? probe.moves(0)[0] : SearchWorker.NO_MOVE;
+
+        AtomicInteger winningMove = new AtomicInteger(SearchWorker.NO_MOVE);
+        BestLine best = trace ? new BestLine() : null;
+        SplitTask root = new SplitTask(control, winningMove, best, new Board(board),
+                completedSets, remainingDeals, 0, SearchWorker.NO_MOVE, trace ? new int[0] : null);
+        boolean won = pool.invoke(root);
+        Solver.Result result = Solver.toResult(control, won, won ? winningMove.get() : fallback);
+        return trace ? Solver.withLine(result, best.line(), 0) : result;
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 所有子任务中进展评分最高的路线，子任务结束时提交自己的最好路线
+     */
+    private static final class BestLine {
+        private int progress = Integer.MIN_VALUE;
+        private int[] line = new int[0];
+
+        synchronized void offer(int progress, int[] line) {
+            if (progress > this.progress) {
+                this.progress = progress;
+                this.line = line;
+            }
+        }
+
+        synchronized int[] line() {
+            return line;
+        }
+    }
+
+    /**
+     * 搜索子任务
+     * 深度小于SPLIT_DEPTH时为每个候选移动创建一个子任务并行搜索，否则在本线程内顺序搜索
+     */
+    private static final class SplitTask extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final SearchControl control;
+        private final AtomicInteger winningMove;
+        private final BestLine best;
+        private final Board board;
+        private final int completedSets;
+        private final int remainingDeals;
+        private final int depth;
+        private final int rootMove;
+        private final int[] prefix;
+
+        /**
+         * @param best 记录最好路线时为共享的最好路线，否则为null
+         * @param board 本任务独占的牌面副本
+         * @param depth 本任务局面所在的深度
+         * @param rootMove 从根节点到达本局面所走的第一步
+         * @param prefix 记录最好路线时为从根节点到达本局面的移动，否则为null
+         */
+        SplitTask(SearchControl control, AtomicInteger winningMove, BestLine best, Board board,
+                  int completedSets, int remainingDeals, int depth, int rootMove, int[] prefix) {
+            this.control = control;
+            this.winningMove = winningMove;
+            this.best = best;
+            this.board = board;
+            this.completedSets = completedSets;
+            this.remainingDeals = remainingDeals;
+            this.depth = depth;
+            this.rootMove = rootMove;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (control.isStopped()) return false;
+            SearchWorker worker = new SearchWorker(control, board, completedSets, remainingDeals);
+
+            boolean won;
+            if (depth >= SPLIT_DEPTH) {
+                if (best != null) worker.traceLine(prefix);
+                won = worker.search(depth);
+                if (best != null) best.offer(worker.bestProgress(), worker.bestLine());
+            } else {
+                won = split(worker);
+            }
+            worker.flushNodes();
+
+            if (won && winningMove.compareAndSet(SearchWorker.NO_MOVE, rootMove)) {
+                control.markSolved();
+            }
+            return won;
+        }
+
+        /**
+         * 展开当前节点，为每个候选移动创建子任务并等待全部完成
+         */
+        private boolean split(SearchWorker worker) {
+            if (completedSets == 8) {
+                if (best != null) best.offer(Integer.MAX_VALUE, prefix);
+                return true;
+            }
+            if (!worker.countNode()) return false;
+            if (!control.table.add(worker.tableKey(), depth)) return false;
+            if (best != null) best.offer(worker.progress(), prefix);
+
+            int n = worker.generateMoves(depth);
+            int[] moves = worker.moves(depth);
+            SplitTask[] children = new SplitTask[n];
+            for (int i = 0; i < n; i++) {
+                int mark = worker.logSize();
+                worker.apply(moves[i]);
+                int[] childPrefix = null;
+                if (prefix != null) {
+                    childPrefix = Arrays.copyOf(prefix, depth + 1);
+                    childPrefix[depth] = moves[i];
+                }
+                children[i] = new SplitTask(control, winningMove, best, new Board(worker.board()),
+                        worker.completedSets(), worker.remainingDeals(), depth + 1,
+                        depth == 0 ? moves[i] : rootMove, childPrefix);
+                worker.undoTo(mark);
+            }
+            invokeAll(children);
+
+            for (SplitTask child : children) {
+                if (child.join()) return true;
+            }
+            return false;
+        }
+    }
+}
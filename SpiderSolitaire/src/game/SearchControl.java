@@ -0,0 +1,140 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 一次求解中所有搜索工作单元共享的控制信息
+ * 包括置换表、节点上限、截止时间、外部取消条件以及停止标志，可被多个线程同时访问
+ */
+final class SearchControl {
+    /**
+     * 共享置换表
+     */
+    final TranspositionTable table;
+
+    private final long maxNodes;
+    private final long deadline;
+    private final BooleanSupplier cancelled;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean aborted;
+    private volatile boolean solved;
+    private volatile boolean depthLimited;
+
+    /**
+     * 置换表是否以规范键（CanonicalKey）代替Zobrist哈希值为键
+     */
+    private boolean canonical;
+
+    /**
+     * 规范键是否把两种花色互换后的局面视为同一局面
+     */
+    private boolean swapSuits;
+
+    /**
+     * 记录路线时比较局面进展使用的评估函数
+     */
+    private Evaluator evaluator = WeightedEvaluator.DEFAULT;
+
+    /**
+     * @param table 置换表
+     * @param maxNodes 最多展开的节点数
+     * @param timeLimitNanos 最长搜索时间（纳秒）
+     */
+    SearchControl(TranspositionTable table, long maxNodes, long timeLimitNanos) {
+        this(table, maxNodes, timeLimitNanos, null);
+    }
+
+    /**
+     * @param table 置换表
+     * @param maxNodes 最多展开的节点数
+     * @param timeLimitNanos 最长搜索时间（纳秒），截止时间按差值比较，很大的值也不会溢出
+     * @param cancelled 外部取消条件，与节点和时间限制一起检查，返回true时中止搜索；null表示不会被取消
+     */
+    SearchControl(TranspositionTable table, long maxNodes, long timeLimitNanos, BooleanSupplier cancelled) {
+        this.table = table;
+        this.maxNodes = maxNodes;
+        this.deadline = System.nanoTime() + timeLimitNanos;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * 让置换表以规范键为键，列顺序不同（以及双花色时花色互换）的等价局面只搜索一次
+     * 必须在创建工作单元之前调用
+     * @param difficulty 游戏难度，双花色时同时合并花色互换的局面
+     */
+    void useCanonicalKeys(int difficulty) {
+        canonical = true;
+        swapSuits = difficulty == 2;
+    }
+
+    /**
+     * 设置记录路线时比较局面进展使用的评估函数，必须在创建工作单元之前调用
+     * @param evaluator 评估函数
+     */
+    void useEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    Evaluator evaluator() {
+        return evaluator;
+    }
+
+    /**
+     * @return 供一个工作单元使用的规范键计算器，不使用规范键时为null
+     */
+    CanonicalKey newCanonicalKey() {
+        return canonical ? new CanonicalKey(swapSuits) : null;
+    }
+
+    /**
+     * 累加节点数并检查节点、时间限制和外部取消条件
+     * @return 是否可以继续搜索
+     */
+    boolean addNodes(long count) {
+        if (nodes.addAndGet(count) > maxNodes || System.nanoTime() - deadline > 0
+                || (cancelled != null && cancelled.getAsBoolean())) {
+            aborted = true;
+        }
+        return !isStopped();
+    }
+
+    /**
+     * @return 已展开的节点数
+     */
+    long nodes() {
+        return nodes.get();
+    }
+
+    /**
+     * 标记已找到获胜路线，其他工作单元随后停止
+     */
+    void markSolved() {
+        solved = true;
+    }
+
+    void markDepthLimited() {
+        depthLimited = true;
+    }
+
+    /**
+     * @return 是否因为超出节点或时间限制、或被取消而中止
+     */
+    boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * @return 是否有分支触及最大深度，此时无法证明局面必败
+     */
+    boolean isDepthLimited() {
+        return depthLimited;
+    }
+
+    /**
+     * @return 是否应当停止搜索（已中止或已找到获胜路线）
+     */
+    boolean isStopped() {
+        return aborted || solved;
+    }
+}
@@ -0,0 +1,389 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * 求解器的搜索工作单元
+ *
+ * 持有一份私有的工作牌面，负责在上面执行和撤销移动、生成排序后的候选移动，
+ * 以及从当前局面出发做深度优先搜索
+ * 顺序求解器只使用一个工作单元；并行求解器为每个子任务创建独立的工作单元，
+ * 它们通过同一个SearchControl共享置换表、节点计数和停止标志
+ */
+final class SearchWorker {
+    /**
+     * 最大搜索深度，超过后按搜索未完成处理，同时避免递归过深
+     */
+    static final int MAX_DEPTH = 400;
+
+    /**
+     * 本地节点计数累积到这个数量后再汇总到共享计数器，减少线程间的竞争
+     */
+    private static final int NODE_BATCH = 1024;
+
+    private final SearchControl control;
+    private final Board board;
+
+    /**
+     * 规范键计算器，不使用规范键时为null
+     */
+    private final CanonicalKey canonicalKey;
+    private final Evaluator evaluator;
+    private int completedSets;
+    private int remainingDeals;
+    private int[] log = new int[1024];
+    private int logSize;
+    private final int[][] moveBuffers = new int[MAX_DEPTH + 1][];
+    private final int[][] priorityBuffers = new int[MAX_DEPTH + 1][];
+    private int pendingNodes;
+    private int firstMove = NO_MOVE;
+
+    /**
+     * 记录路线时，path[d]为从根节点到当前局面第d步的移动；不记录时为null
+     */
+    private int[] path;
+
+    /**
+     * 目前进展最好的局面的路线及其进展评分，见traceLine()
+     */
+    private int[] bestLine;
+    private int bestLength;
+    private int bestProgress = Integer.MIN_VALUE;
+
+    /**
+     * 在状态副本上创建一个工作单元
+     */
+    SearchWorker(SearchControl control, Board board, int completedSets, int remainingDeals) {
+        this.control = control;
+        this.board = new Board(board);
+        this.canonicalKey = control.newCanonicalKey();
+        this.evaluator = control.evaluator();
+        this.completedSets = completedSets;
+        this.remainingDeals = remainingDeals;
+    }
+
+    Board board() {
+        return board;
+    }
+
+    int completedSets() {
+        return completedSets;
+    }
+
+    int remainingDeals() {
+        return remainingDeals;
+    }
+
+    int logSize() {
+        return logSize;
+    }
+
+    /**
+     * @return 当前局面在置换表中的键：使用规范键时为规范键，否则为Zobrist哈希值
+     */
+    long tableKey() {
+        return canonicalKey != null ? canonicalKey.of(board) : board.hash();
+    }
+
+    /**
+     * 开始记录路线：搜索时跟踪从根节点出发进展评分最高的局面，获胜时为完整的获胜路线
+     * 用于可以随时停止的求解，必须在从深度0开始搜索之前调用
+     */
+    void traceLine() {
+        traceLine(new int[0]);
+    }
+
+    /**
+     * 开始记录路线，工作单元的局面是从根节点沿prefix走到的局面
+     * 用于并行求解的子任务：记录到的路线包括prefix，必须在从深度prefix.length开始搜索之前调用
+     * @param prefix 从根节点到当前局面的移动
+     */
+    void traceLine(int[] prefix) {
+        path = new int[MAX_DEPTH + 1];
+        bestLine = new int[MAX_DEPTH + 1];
+        System.arraycopy(prefix, 0, path, 0, prefix.length);
+    }
+
+    /**
+     * @return 记录到的最好路线（移动编码），没有记录时为空数组
+     */
+    int[] bestLine() {
+        return bestLine == null ? new int[0] : Arrays.copyOf(bestLine, bestLength);
+    }
+
+    /**
+     * @return 最好路线终点局面的进展评分，没有记录时为Integer.MIN_VALUE
+     */
+    int bestProgress() {
+        return bestProgress;
+    }
+
+    /**
+     * 局面的进展评分，用于在没有找到获胜路线时挑选最好的路线，由SearchControl中的评估函数计算
+     */
+    int progress() {
+        return evaluator.evaluate(board, completedSets, remainingDeals);
+    }
+
+    /**
+     * 把当前路线记为最好路线
+     */
+    private void recordLine(int depth, int progress) {
+        System.arraycopy(path, 0, bestLine, 0, depth);
+        bestLength = depth;
+        bestProgress = progress;
+    }
+
+    /**
+     * @return 从深度0开始搜索并获胜时，获胜路线的第一步；否则为NO_MOVE
+     */
+    int firstMove() {
+        return firstMove;
+    }
+
+    /**
+     * @return 指定深度的候选移动缓冲区，内容由最近一次generateMoves(depth)写入
+     */
+    int[] moves(int depth) {
+        return moveBuffers[depth];
+    }
+
+    /**
+     * 统计一个新节点，并检查是否需要停止
+     * @return 是否可以继续搜索
+     */
+    boolean countNode() {
+        if (++pendingNodes < NODE_BATCH) return !control.isStopped();
+        boolean ok = control.addNodes(pendingNodes);
+        pendingNodes = 0;
+        return ok;
+    }
+
+    /**
+     * 把尚未汇总的节点数计入共享计数器
+     */
+    void flushNodes() {
+        control.addNodes(pendingNodes);
+        pendingNodes = 0;
+    }
+
+    /**
+     * 深度优先搜索
+     * @param depth 当前搜索深度，根节点为0
+     * @return 从当前局面出发能否获胜
+     */
+    boolean search(int depth) {
+        if (completedSets == 8) {
+            if (path != null) recordLine(depth, Integer.MAX_VALUE);
+            return true;
+        }
+
+        if (!countNode()) return false;
+        if (depth >= MAX_DEPTH) {
+            control.markDepthLimited();
+            return false;
+        }
+
+        // 已经搜索过（或正在某条路径上）的局面不再重复搜索
+        if (!control.table.add(tableKey(), depth)) return false;
+
+        if (path != null) {
+            int p = progress();
+            if (p > bestProgress) recordLine(depth, p);
+        }
+
+        int n = generateMoves(depth);
+        int[] moves = moveBuffers[depth];
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            int mark = logSize;
+            apply(m);
+            if (path != null) path[depth] = m;
+
+            boolean won = search(depth + 1);
+
+            // 撤销本次移动以及随之发生的牌组移除
+            undoTo(mark);
+
+            if (won) {
+                if (depth == 0) firstMove = m;
+                return true;
+            }
+            if (control.isStopped()) return false;
+        }
+        return false;
+    }
+
+    /**
+     * 在工作牌面上执行一个移动（或发牌），并移除由此形成的完整牌组
+     * 每一步改动都会记入撤销日志
+     */
+    void apply(int m) {
+        if (m == MoveGenerator.DEAL) {
+            board.dealRow();
+            remainingDeals--;
+            record(LOG_DEAL);
+        } else {
+            int from = MoveGenerator.from(m);
+            board.moveCards(from, MoveGenerator.to(m), MoveGenerator.count(m));
+            boolean flipped = board.revealTop(from);
+            record(m << 3 | (flipped ? LOG_FLIPPED : 0) | LOG_MOVE);
+        }
+        // 只有放入过牌的列才可能形成完整牌组
+        int dirty = board.takeDirtyColumns();
+        while (dirty != 0) {
+            int i = Integer.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+            if (board.hasCompleteRun(i)) {
+                int suit = board.suitAt(i, board.size(i) - 1);
+                board.removeRun(i);
+                boolean flipped = board.revealTop(i);
+                completedSets++;
+                record((i | suit << 4) << 3 | (flipped ? LOG_FLIPPED : 0) | LOG_REMOVE);
+            }
+        }
+    }
+
+    /**
+     * 按撤销日志逆序撤销，直到日志长度回到mark
+     */
+    void undoTo(int mark) {
+        while (logSize > mark) {
+            int entry = log[--logSize];
+            int kind = entry & 0x3;
+            int data = entry >>> 3;
+            if (kind == LOG_DEAL) {
+                board.undealRow();
+                remainingDeals++;
+            } else if (kind == LOG_MOVE) {
+                int from = MoveGenerator.from(data);
+                if ((entry & LOG_FLIPPED) != 0) board.hideTop(from);
+                board.moveCards(MoveGenerator.to(data), from, MoveGenerator.count(data));
+            } else {
+                int col = data & 0xF;
+                if ((entry & LOG_FLIPPED) != 0) board.hideTop(col);
+                board.restoreRun(col, data >> 4);
+                completedSets--;
+            }
+        }
+    }
+
+    private void record(int entry) {
+        if (logSize == log.length) log = Arrays.copyOf(log, logSize * 2);
+        log[logSize++] = entry;
+    }
+
+    /**
+     * 生成当前局面的候选移动，剪掉无意义的移动后按启发式优先级排序
+     * 结果写入该深度专用的缓冲区，缓冲区只在第一次到达该深度时分配
+     * @param depth 当前搜索深度
+     * @return 候选移动数量
+     */
+    int generateMoves(int depth) {
+        int[] moves = moveBuffers[depth];
+        int[] priorities = priorityBuffers[depth];
+        if (moves == null) {
+            moves = moveBuffers[depth] = new int[MoveGenerator.MAX_MOVES];
+            priorities = priorityBuffers[depth] = new int[MoveGenerator.MAX_MOVES];
+        }
+        int total = MoveGenerator.generate(board, remainingDeals, moves);
+
+        boolean stockEmpty = board.stockSize() == 0;
+        int firstEmpty = -1;
+        for (int i = 0; i < Board.COLUMNS; i++) {
+            if (board.isEmpty(i)) {
+                firstEmpty = i;
+                break;
+            }
+        }
+
+        // 原地过滤
+        int n = 0;
+        for (int i = 0; i < total; i++) {
+            int m = moves[i];
+            if (m == MoveGenerator.DEAL) {
+                moves[n] = m;
+                priorities[n++] = Integer.MIN_VALUE; // 发牌放在最后
+                continue;
+            }
+            int from = MoveGenerator.from(m);
+            int to = MoveGenerator.to(m);
+            int count = MoveGenerator.count(m);
+            if (board.isEmpty(to)) {
+                // 牌堆为空时各空列完全等价，只尝试第一个
+                if (stockEmpty && to != firstEmpty) continue;
+                // 整列移到空列没有意义
+                if (count == board.size(from)) continue;
+            } else if (!improvesLink(from, to, count)) {
+                continue;
+            }
+            moves[n] = m;
+            priorities[n++] = priority(from, to, count);
+        }
+
+        // 按优先级从高到低插入排序，候选移动数量很少
+        for (int i = 1; i < n; i++) {
+            int m = moves[i];
+            int p = priorities[i];
+            int j = i - 1;
+            while (j >= 0 && priorities[j] < p) {
+                moves[j + 1] = moves[j];
+                priorities[j + 1] = priorities[j];
+                j--;
+            }
+            moves[j + 1] = m;
+            priorities[j + 1] = p;
+        }
+        return n;
+    }
+
+    /**
+     * 判断移动到非空列是否值得尝试
+     * 如果牌组原本就接在一张能接的正面牌上，只有改接到同花色（而原来不同花色）的牌上才有意义
+     */
+    private boolean improvesLink(int from, int to, int count) {
+        int baseIndex = board.size(from) - count;
+        if (baseIndex == 0) return true;
+        byte base = board.get(from, baseIndex);
+        byte below = board.get(from, baseIndex - 1);
+        if (!board.isFaceUp(from, baseIndex - 1) || Board.rank(below) != Board.rank(base) + 1) return true;
+        return Board.suit(below) != Board.suit(base) && Board.suit(board.top(to)) == Board.suit(base);
+    }
+
+    /**
+     * 移动的启发式优先级，数值越大越先尝试
+     */
+    private int priority(int from, int to, int count) {
+        int baseIndex = board.size(from) - count;
+        byte base = board.get(from, baseIndex);
+        int p = 0;
+        if (baseIndex > 0) {
+            byte below = board.get(from, baseIndex - 1);
+            if (!board.isFaceUp(from, baseIndex - 1)) {
+                p += 100; // 能翻开暗牌
+            } else if (Board.rank(below) == Board.rank(base) + 1) {
+                // 拆开已经连好的牌，同花色时代价更高
+                p -= Board.suit(below) == Board.suit(base) ? 80 : 30;
+            }
+        } else if (!board.isEmpty(to)) {
+            p += 60; // 清空一列
+        }
+        if (board.isEmpty(to)) {
+            p -= 50; // 占用空列
+        } else if (Board.suit(board.top(to)) == Board.suit(base)) {
+            p += 40 + count; // 同花色连接
+        }
+        return p;
+    }
+
+    /**
+     * 表示没有移动
+     */
+    static final int NO_MOVE = -2;
+
+    // 撤销日志条目：低2位为类型，第2位为翻牌标志，其余位为数据
+    private static final int LOG_MOVE = 0;
+    private static final int LOG_DEAL = 1;
+    private static final int LOG_REMOVE = 2;
+    private static final int LOG_FLIPPED = 0x4;
+}
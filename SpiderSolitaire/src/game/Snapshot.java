@@ -0,0 +1,147 @@
+package game;
+
+/**
+ * 不可变的局面快照
+ *
+ * 保存某一时刻的牌面和计分信息，创建后不再改变，可以在任意线程中读取，
+ * 供后台提示、搜索等需要私有局面副本的场景使用，界面线程同时可以继续修改实际的游戏
+ *
+ * 快照之间共享没有变化的列：GameState.snapshot()只复制自上一个快照以来有变化的列和牌堆，
+ * 其余列直接引用上一个快照中的数组，创建代价与变化的列数成正比
+ * 所有数组在创建后都不会被修改，也不会暴露给外部
+ *
+ * 快照不包含撤销记录和时间线，通过toGame()得到的游戏从快照的局面开始，没有可撤销的操作
+ */
+public final class Snapshot {
+    public final int difficulty;
+    public final long dealNumber;
+    public final int score;
+    public final int completedSets;
+    public final int remainingDeals;
+
+    /**
+     * 每列从底到顶的牌的编码，可能与其他快照共享
+     */
+    private final byte[][] columns;
+
+    /**
+     * 每列底部的暗牌张数
+     */
+    private final int[] faceDown;
+
+    /**
+     * 牌堆从底到顶的牌的编码，可能与其他快照共享
+     */
+    private final byte[] stock;
+
+    private final long hash;
+
+    /**
+     * 由游戏状态创建快照
+     * @param state 游戏状态
+     * @param previous 同一个游戏状态的上一个快照，没有时为null
+     * @param modified 自previous创建以来有变化的列和牌堆，见Board.takeModified()
+     */
+    Snapshot(GameState state, Snapshot previous, int modified) {
+        Board board = state.board;
+        if (previous == null) modified = Board.MODIFIED_ALL;
+        difficulty = state.difficulty;
+        dealNumber = state.dealNumber;
+        score = state.score;
+        completedSets = state.completedSets;
+        remainingDeals = state.remainingDeals;
+
+        columns = new byte[Board.COLUMNS][];
+        faceDown = new int[Board.COLUMNS];
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            columns[col] = (modified & 1 << col) != 0 ? board.copyColumn(col) : previous.columns[col];
+            faceDown[col] = board.faceDownCount(col);
+        }
+        stock = (modified & 1 << Board.COLUMNS) != 0 ? board.copyStock() : previous.stock;
+        hash = board.hash();
+    }
+
+    /**
+     * @return 指定列的张数
+     */
+    public int size(int col) {
+        return columns[col].length;
+    }
+
+    /**
+     * @return 指定列第index张牌的编码（0为最底部），编码与Board相同
+     */
+    public byte get(int col, int index) {
+        return columns[col][index];
+    }
+
+    /**
+     * @return 指定位置的牌是否正面朝上
+     */
+    public boolean isFaceUp(int col, int index) {
+        return index >= faceDown[col];
+    }
+
+    /**
+     * @return 指定列底部的暗牌张数
+     */
+    public int faceDownCount(int col) {
+        return faceDown[col];
+    }
+
+    /**
+     * @return 剩余牌堆张数
+     */
+    public int stockSize() {
+        return stock.length;
+    }
+
+    /**
+     * @return 牌堆中第index张牌的编码（0为最底部）
+     */
+    public byte stockAt(int index) {
+        return stock[index];
+    }
+
+    /**
+     * @return 快照牌面的Zobrist哈希值，与Board.hash()一致
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * 还原为一个新的牌面
+     * @return 与快照内容相同的牌面，可以自由修改
+     */
+    public Board toBoard() {
+        Board board = new Board();
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            byte[] cards = columns[col];
+            for (int i = 0; i < cards.length; i++) board.push(col, cards[i], i >= faceDown[col]);
+        }
+        for (byte code : stock) board.pushStock(code);
+        board.takeDirtyColumns(); // 还原局面不算放入新牌，不需要检查完整牌组
+        return board;
+    }
+
+    /**
+     * 还原为一个新的游戏状态
+     * @return 与快照局面和计分相同的游戏状态，撤销记录为空
+     */
+    public GameState toState() {
+        GameState state = new GameState(difficulty, dealNumber, toBoard());
+        state.score = score;
+        state.completedSets = completedSets;
+        state.remainingDeals = remainingDeals;
+        return state;
+    }
+
+    /**
+     * 还原为一个可以继续玩的游戏
+     * @return 从快照局面开始的新游戏
+     */
+    public SpiderGame toGame() {
+        return new SpiderGame(toState());
+    }
+}
@@ -0,0 +1,350 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 蜘蛛纸牌求解器
+ *
+ * 使用深度优先搜索在当前局面中寻找一条能够获胜的路线：
+ * - 置换表：以牌面的规范键（见CanonicalKey）为键，记录已经搜索过且没有找到获胜路线的局面，避免重复搜索和循环，
+ *   只在列的顺序（双花色时还有花色）上不同的局面只搜索一次；关闭规范键时以Zobrist哈希值为键
+ * - 着法排序：优先尝试翻开暗牌、同花色连接、清空牌列的移动，发牌放在最后
+ * - 剪枝：跳过把整列移动到空列这类毫无意义的移动；牌堆为空时所有空列等价，只尝试第一个空列；
+ *   牌组已经接在一张能接的牌上时，只有改接到同花色的牌上才尝试，避免在不同的牌之间来回搬动
+ *
+ * 剪枝规则属于常用的启发式规则，极少数依赖来回搬动的局面会找不到获胜路线，
+ * 因此搜索完毕仍没有找到获胜路线时返回NO_WIN，而不是断定局面无法获胜
+ *
+ * 搜索受节点数和时间限制，超出限制时返回UNKNOWN，
+ * 此时结果中仍然带有排序后最靠前的候选移动，调用方可以作为普通提示使用
+ *
+ * 按预算求解（solve(GameState, Budget)）时可以随时停止：搜索过程中记录进展评分（见Evaluator）最高的局面的路线，
+ * 预算用完或被取消时返回目前最好的路线，获胜时返回完整的获胜路线
+ * 获胜路线通常有一两百步，按深度迭代加深时浅层的几轮在几秒内都搜索不完，
+ * 因此不分轮，直接做一次完整深度的深度优先搜索
+ *
+ * 求解器在游戏状态的私有副本上工作，不会修改传入的状态
+ * 置换表在第一次求解时分配在堆外，之后每次求解清空复用，同一个求解器不能被多个线程同时使用
+ * 具体的搜索过程由SearchWorker完成，多线程版本见ParallelSolver
+ */
+public class Solver {
+    /**
+     * 求解结果状态
+     * WIN=找到获胜路线，NO_WIN=在剪枝规则下搜索完毕、没有找到获胜路线（不代表一定无法获胜），UNKNOWN=超出搜索限制
+     */
+    public enum Status { WIN, NO_WIN, UNKNOWN }
+
+    /**
+     * 路线上的一步，from == -1 表示发牌
+     */
+    public static final class Step {
+        public final int from;
+        public final int to;
+        public final int count;
+
+        Step(int move) {
+            if (move == MoveGenerator.DEAL) {
+                from = -1;
+                to = -1;
+                count = 0;
+            } else {
+                from = MoveGenerator.from(move);
+                to = MoveGenerator.to(move);
+                count = MoveGenerator.count(move);
+            }
+        }
+
+        /**
+         * @return 这一步是否为发牌
+         */
+        public boolean isDeal() {
+            return from == -1;
+        }
+
+        @Override
+        public String toString() {
+            return isDeal() ? "发牌" : (from + 1) + "->" + (to + 1) + "x" + count;
+        }
+    }
+
+    /**
+     * 求解结果
+     * from == -1 表示建议发牌，from == -2 表示没有任何可用移动
+     */
+    public static class Result {
+        public final Status status;
+        public final int from;
+        public final int to;
+        public final int count;
+        /**
+         * 本次搜索展开的节点数
+         */
+        public final long nodes;
+        /**
+         * 本次搜索的置换表统计信息
+         */
+        public final TranspositionTable.Stats tableStats;
+        /**
+         * 目前找到的最好路线，获胜时为完整的获胜路线；只有按预算求解时才填写，否则为空
+         */
+        public final List<Step> line;
+        /**
+         * 本次求解的耗时（纳秒），不按预算求解时为0
+         */
+        public final long elapsedNanos;
+
+        public Result(Status status, int from, int to, int count, long nodes, TranspositionTable.Stats tableStats) {
+            this(status, from, to, count, nodes, tableStats, Collections.emptyList(), 0);
+        }
+
+        public Result(Status status, int from, int to, int count, long nodes, TranspositionTable.Stats tableStats,
+                      List<Step> line, long elapsedNanos) {
+            this.status = status;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+            this.nodes = nodes;
+            this.tableStats = tableStats;
+            this.line = line;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return 搜索是否已经得出结论（找到获胜路线或搜索完毕），为false时表示因预算用完而提前停止
+         */
+        public boolean isFinished() {
+            return status != Status.UNKNOWN;
+        }
+
+        /**
+         * @return 是否带有可执行的建议移动（包括发牌）
+         */
+        public boolean hasMove() {
+            return from != -2;
+        }
+
+        /**
+         * @return 建议的操作是否为发牌
+         */
+        public boolean isDeal() {
+            return from == -1;
+        }
+    }
+
+    /**
+     * 未指定置换表大小时按节点数估算，估算结果的上限（MB）
+     */
+    private static final long DEFAULT_TABLE_MB = 64;
+
+    private static final long MEGABYTE = 1L << 20;
+
+    /**
+     * 最多展开的节点数
+     */
+    private final long maxNodes;
+
+    /**
+     * 不带预算的solve使用的预算，由构造时的节点数和时间上限组成
+     */
+    private final Budget budget;
+
+    /**
+     * 置换表大小（MB），0表示按节点数估算
+     */
+    private final long tableMegabytes;
+
+    /**
+     * 置换表，第一次求解时创建
+     */
+    private TranspositionTable table;
+
+    /**
+     * 置换表是否按构造时的参数分配，按预算中的内存上限分配后为false
+     */
+    private boolean defaultTable;
+
+    /**
+     * 置换表是否以规范键为键
+     */
+    private boolean canonical = true;
+
+    /**
+     * 按预算求解时比较局面进展使用的评估函数
+     */
+    private Evaluator evaluator = WeightedEvaluator.DEFAULT;
+
+    /**
+     * 构造函数，置换表大小按节点数估算
+     * @param maxNodes 最多展开的节点数
+     * @param timeLimitMillis 最长搜索时间（毫秒）
+     */
+    public Solver(long maxNodes, long timeLimitMillis) {
+        this(maxNodes, timeLimitMillis, 0);
+    }
+
+    /**
+     * 构造函数
+     * @param maxNodes 最多展开的节点数
+     * @param timeLimitMillis 最长搜索时间（毫秒）
+     * @param tableMegabytes 置换表大小（MB），0表示按节点数估算
+     */
+    public Solver(long maxNodes, long timeLimitMillis, long tableMegabytes) {
+        this.maxNodes = maxNodes;
+        this.budget = Budget.nodes(maxNodes).withMillis(timeLimitMillis);
+        this.tableMegabytes = tableMegabytes;
+    }
+
+    /**
+     * 设置置换表是否以规范键为键，默认开启
+     * 关闭后置换表以Zobrist哈希值为键，只合并完全相同的局面，主要用于对比测试
+     * @param canonical 是否使用规范键
+     */
+    public void setCanonical(boolean canonical) {
+        this.canonical = canonical;
+    }
+
+    /**
+     * 设置按预算求解时比较局面进展使用的评估函数，默认为WeightedEvaluator.DEFAULT
+     * 没有找到获胜路线时，返回的路线和建议的第一步取评估函数评分最高的局面
+     * @param evaluator 评估函数
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * 求解指定局面
+     * @param state 要求解的游戏状态，不会被修改
+     * @return 求解结果，包含状态和建议的第一步
+     */
+    public Result solve(GameState state) {
+        return solve(state.board, state.difficulty, state.completedSets, state.remainingDeals, budget, false);
+    }
+
+    /**
+     * 求解快照中的局面，可以在界面线程继续修改游戏的同时在其他线程中调用
+     * @param snapshot 要求解的局面快照
+     * @return 求解结果，包含状态和建议的第一步
+     */
+    public Result solve(Snapshot snapshot) {
+        return solve(snapshot.toBoard(), snapshot.difficulty, snapshot.completedSets, snapshot.remainingDeals,
+                budget, false);
+    }
+
+    /**
+     * 在预算内求解指定局面，可以随时停止
+     * 预算用完、被取消或得出结论时返回，结果中带有目前最好的路线、是否得出结论以及统计信息
+     * 预算中没有限制内存时，置换表大小按构造时的参数确定
+     * @param state 要求解的游戏状态，不会被修改
+     * @param budget 求解预算
+     * @return 求解结果
+     */
+    public Result solve(GameState state, Budget budget) {
+        return solve(state.board, state.difficulty, state.completedSets, state.remainingDeals, budget, true);
+    }
+
+    /**
+     * 在预算内求解快照中的局面，见solve(GameState, Budget)
+     * @param snapshot 要求解的局面快照
+     * @param budget 求解预算
+     * @return 求解结果
+     */
+    public Result solve(Snapshot snapshot, Budget budget) {
+        return solve(snapshot.toBoard(), snapshot.difficulty, snapshot.completedSets, snapshot.remainingDeals,
+                budget, true);
+    }
+
+    /**
+     * 所有solve共用的求解过程
+     * @param trace 是否记录最好路线；不记录时结果中的路线为空，搜索未完成时建议根节点排序后的第一个候选移动
+     */
+    private Result solve(Board board, int difficulty, int completedSets, int remainingDeals, Budget budget,
+                         boolean trace) {
+        long start = System.nanoTime();
+        prepareTable(budget.memoryMegabytes());
+        SearchControl control = new SearchControl(table, budget.maxNodes(), budget.timeLimitNanos(), budget.cancelled());
+        if (canonical) control.useCanonicalKeys(difficulty);
+        control.useEvaluator(evaluator);
+        SearchWorker worker = new SearchWorker(control, board, completedSets, remainingDeals);
+        if (trace) worker.traceLine();
+
+        // 根节点排序后的第一个候选移动，搜索未完成时作为退路
+        int rootCount = worker.generateMoves(0);
+        int fallback = rootCount > 0 ? worker.moves(0)[0] : SearchWorker.NO_MOVE;
+
+        boolean won = worker.search(0);
+        worker.flushNodes();
+        Result result = toResult(control, won, won ? worker.firstMove() : fallback);
+
+        return withLine(result, worker.bestLine(), System.nanoTime() - start);
+    }
+
+    /**
+     * 给求解结果加上路线和耗时，供顺序和并行的按预算求解共用
+     * 没有找到获胜路线时，建议的第一步取最好路线的第一步，路线为空时仍取原结果中的候选
+     * @param result 搜索结束时的结果
+     * @param bestLine 最好路线（移动编码）
+     * @param elapsedNanos 求解耗时（纳秒）
+     */
+    static Result withLine(Result result, int[] bestLine, long elapsedNanos) {
+        List<Step> line = new ArrayList<>(bestLine.length);
+        for (int m : bestLine) line.add(new Step(m));
+        Step first = bestLine.length > 0 ? line.get(0) : null;
+        return new Result(result.status,
+                first != null ? first.from : result.from,
+                first != null ? first.to : result.to,
+                first != null ? first.count : result.count,
+                result.nodes, result.tableStats, Collections.unmodifiableList(line), elapsedNanos);
+    }
+
+    /**
+     * 准备本次求解使用的置换表：第一次求解时分配，之后清空复用
+     * @param memoryMegabytes 内存上限（MB），与现有的表大小不同时重新分配；0表示按构造时的参数确定
+     */
+    private void prepareTable(long memoryMegabytes) {
+        if (memoryMegabytes > 0) {
+            long bytes = Long.highestOneBit(memoryMegabytes * MEGABYTE);
+            if (table == null || table.sizeInBytes() != bytes) {
+                table = new TranspositionTable(memoryMegabytes);
+                defaultTable = false;
+                return;
+            }
+        } else if (table == null || !defaultTable) {
+            table = tableMegabytes > 0
+                    ? new TranspositionTable(tableMegabytes)
+                    : TranspositionTable.forEntries(this.maxNodes, DEFAULT_TABLE_MB);
+            defaultTable = true;
+            return;
+        }
+        table.clear();
+    }
+
+    /**
+     * 根据搜索结束时的控制信息生成求解结果
+     * @param control 搜索控制信息
+     * @param won 是否找到获胜路线
+     * @param move 要建议的移动编码
+     */
+    static Result toResult(SearchControl control, boolean won, int move) {
+        Status status;
+        if (won) {
+            status = Status.WIN;
+        } else if (control.isAborted() || control.isDepthLimited()) {
+            status = Status.UNKNOWN;
+        } else {
+            status = Status.NO_WIN;
+        }
+
+        long nodes = control.nodes();
+        TranspositionTable.Stats stats = control.table.stats();
+        if (move == SearchWorker.NO_MOVE) {
+            return new Result(status, -2, -2, 0, nodes, stats);
+        } else if (move == MoveGenerator.DEAL) {
+            return new Result(status, -1, -1, 0, nodes, stats);
+        }
+        return new Result(status, MoveGenerator.from(move), MoveGenerator.to(move),
+                MoveGenerator.count(move), nodes, stats);
+    }
+}
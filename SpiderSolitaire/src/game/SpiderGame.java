@@ -1,8 +1,5 @@
 package game;
 
-import java.util.*;
-import model.Card;
-
 /**
  * 蜘蛛纸牌游戏核心逻辑类
  * 
@@ -23,7 +20,7 @@ public class SpiderGame {
      * 这是蜘蛛纸牌游戏的核心状态容器，包含：
      * - 10个游戏列（columns）
      * - 剩余牌堆（stock）
-     * - 撤销操作栈（undoStack）
+     * - 撤销记录（undoLog）
      * - 游戏统计信息（分数、完成牌组数等）
      * - 剩余发牌次数（remainingDeals）
      * 
@@ -33,6 +30,16 @@ public class SpiderGame {
      */
     private GameState state;
 
+    /**
+     * 游戏事件监听器，没有时为null
+     */
+    private GameListener listener;
+
+    /**
+     * 对局时间线，保存可以重做的操作和用于跳转的检查点
+     */
+    private final Timeline timeline;
+
     /**
      * 蜘蛛纸牌游戏构造函数
      * 
@@ -49,11 +56,29 @@ public class SpiderGame {
         // 创建游戏状态对象，传递难度参数
         // GameState构造函数会根据难度初始化牌堆、游戏列等
         this.state = new GameState(difficulty);
+        this.timeline = new Timeline(Timeline.DEFAULT_INTERVAL);
         
         // 重要说明：
         // state是GameState类的实例，它封装了游戏的所有状态信息
         // 下面的很多方法都需要通过state.前缀来访问游戏状态
-        // 例如：state.columns、state.undoStack、state.score等
+        // 例如：state.board、state.undoLog、state.score等
+        timeline.passed(state);
+    }
+
+    /**
+     * 蜘蛛纸牌游戏构造函数 - 指定牌局编号
+     * 
+     * 相同的难度和牌局编号总是得到相同的初始牌局，用于重玩或分享牌局
+     * 
+     * @param difficulty 游戏难度级别：1=单花色，2=双花色，4=四花色
+     * @param dealNumber 牌局编号
+     * 
+     * @see GameState#GameState(int, long)
+     */
+    public SpiderGame(int difficulty, long dealNumber) {
+        this.state = new GameState(difficulty, dealNumber);
+        this.timeline = new Timeline(Timeline.DEFAULT_INTERVAL);
+        timeline.passed(state);
     }
 
     /**
@@ -64,7 +89,30 @@ public class SpiderGame {
      * @param savedState 已保存的游戏状态对象
      */
     public SpiderGame(GameState savedState) {
-        this.state = savedState;
+        this(savedState, true);
+    }
+
+    /**
+     * 蜘蛛纸牌游戏构造函数 - 可以不保存时间线检查点
+     * 
+     * 模拟和推演会大量创建对局，每局都不需要跳转，不保存检查点可以省去周期性复制牌面；
+     * 撤销和重做照常可用，跳转改为逐步撤销或重做
+     * 
+     * @param state 游戏状态
+     * @param checkpoints 是否保存用于跳转的时间线检查点
+     */
+    public SpiderGame(GameState state, boolean checkpoints) {
+        this.state = state;
+        this.timeline = new Timeline(checkpoints ? Timeline.DEFAULT_INTERVAL : 0);
+        timeline.passed(state);
+    }
+
+    /**
+     * 设置游戏事件监听器
+     * @param listener 监听器，传入null表示取消监听
+     */
+    public void setListener(GameListener listener) {
+        this.listener = listener;
     }
 
     /**
@@ -105,66 +153,21 @@ public class SpiderGame {
      * @see #move(int, int, int)
      */
     public boolean canMove(int from, int to, int count) {
-        // 获取源列和目标列的牌堆
-        Stack<Card> src = state.columns[from];
-        Stack<Card> dst = state.columns[to];
+        Board board = state.board;
 
-        // 基本检查：源列是否有足够的牌
-        if (src.size() < count) return false;
+        // 规则1-2：移动的牌必须都在列顶的可移动牌组内
+        // 可移动牌组由牌面增量维护：全部正面朝上、同花色且连续递减（K-Q-J-...-3-2-A）
+        if (count < 1 || count > board.movableRun(from)) return false;
 
-        // 获取关键牌面信息
-        Card base = src.get(src.size() - count); // 要移动的牌组中最底部的牌
-        Card top = src.peek(); // 源列最顶部的牌
-        
-        // 特殊规则检查：K只能移动到空位上
-        // 这是蜘蛛纸牌的重要规则，国王(K)不能叠在其他牌上面
-        if (base.getRank() == 13 && !dst.isEmpty()) {
-            return false; // K只能移动到空位
-        }
-        
-        // 移动牌组的内部规则检查
-        Card.Suit suit = base.getSuit(); // 记录牌组的花色，用于后续同花色检查
-        for (int i = src.size() - count; i < src.size(); i++) {
-            Card current = src.get(i);
-            
-            // 规则1：所有牌必须正面朝上才能移动
-            if (!current.isFaceUp()) {
-                return false; // 背面朝上的牌不能移动
-            }
-            
-            // 规则2：所有牌必须同花色
-            if (current.getSuit() != suit) {
-                return false; // 花色不匹配
-            }
-        }
-        
-        // 规则3：检查移动的牌组是否按顺序递减
-        // 例如：K-Q-J-10-9-8-7-6-5-4-3-2-A（从大到小）
-        for (int i = src.size() - count; i < src.size() - 1; i++) {
-            Card current = src.get(i);      // 当前牌
-            Card next = src.get(i + 1);     // 下一张牌（更靠近顶部）
-            // 当前牌的点数必须比下一张牌大1（连续递减）
-            if (current.getRank() != next.getRank() + 1) {
-                return false; // 不是连续递减的序列
-            }
-        }
+        // 目标列为空时，任何符合规则的牌组都可以移动到这里
+        if (board.isEmpty(to)) return true;
 
         // 目标列非空时的连接规则检查
-        if (!dst.isEmpty()) {
-            Card dstTop = dst.peek(); // 目标列最顶部的牌
-            
-            // 特殊规则：A只能接在2下面
-            if (base.getRank() == 1 && dstTop.getRank() != 2) {
-                return false; // A只能接在2下面
-            }
-            
-            // 主要连接规则：目标牌必须比基础牌大1（连续递增）
-            // 例如：将Q移动到K上面，形成K-Q序列
-            return dstTop.getRank() == base.getRank() + 1;
-        }
-        
-        // 目标列为空时，任何符合规则的牌组都可以移动到这里
-        return true;
+        // 目标牌必须比基础牌大1（连续递增），例如将Q移动到K上面，A只能接在2下面
+        // K没有更大的牌可接，因此只能移动到空位上
+        int baseRank = Board.rank(board.get(from, board.size(from) - count)); // 要移动的牌组中最底部的牌
+        int dstTopRank = Board.rank(board.top(to));                          // 目标列最顶部的牌
+        return dstTopRank == baseRank + 1;
     }
 
     /**
@@ -179,130 +182,284 @@ public class SpiderGame {
             return; // 如果不合法，直接返回
         }
         
-        Stack<Card> src = state.columns[from]; // 源列
-        Stack<Card> dst = state.columns[to];   // 目标列
-
-        // 创建移动牌组的记录，用于撤销操作
-        List<Card> moved = new ArrayList<>();
-        // 从源列取出指定数量的牌，添加到移动列表中
-        for (int i = 0; i < count; i++) {
-            moved.add(0, src.pop()); // 逆序添加，保持牌的顺序
-        }
-        // 将移动的牌添加到目标列
-        dst.addAll(moved);
+        timeline.branch(state.undoLog.size());
+        applyMove(from, to, count);
+        // 每次有效移动扣1分
+        state.score--;
+        checkHash();
+        if (listener != null) listener.moved(from, to, count);
+    }
+
+    /**
+     * 移动牌并记录到撤销记录，不做规则检查，也不计分
+     */
+    private void applyMove(int from, int to, int count) {
+        // 将源列顶部的count张牌整体移到目标列，保持牌的顺序
+        state.board.moveCards(from, to, count);
 
-        // 检查源列是否需要翻牌
-        boolean flipped = false;
-        boolean wasFaceUpBeforeMove = true;
-        Card flippedCard = null;
         // 如果源列还有牌且最顶部的牌是背面朝上，需要翻面
-        if (!src.isEmpty() && !src.peek().isFaceUp()) {
-            src.peek().flip(); // 翻牌
-            flipped = true;
-            wasFaceUpBeforeMove = false;
-            flippedCard = src.peek();
-        }
+        boolean flipped = state.board.revealTop(from);
 
-        // 将移动操作记录到撤销栈中
-        state.undoStack.push(new Move(from, to, moved, flipped, wasFaceUpBeforeMove, flippedCard));
-        // 每次有效移动扣1分
-        state.score--;
+        // 将移动操作记录到撤销记录中
+        record(UndoLog.move(from, to, count, flipped));
+    }
+
+    /**
+     * 把一条操作压入撤销记录，并在到达检查点位置时保存检查点
+     * 必须在牌面和计数都已更新之后调用，检查点保存的是执行完这条操作的局面
+     */
+    private void record(long entry) {
+        state.undoLog.push(entry);
+        timeline.passed(state);
     }
 
     /**
      * 执行撤销操作，恢复到上一步的游戏状态
      */
     public void undo() {
-        // 检查撤销栈是否为空，如果为空则无法撤销
-        if (state.undoStack.isEmpty()) return;
+        // 检查撤销记录是否为空，如果为空则无法撤销
+        if (state.undoLog.isEmpty()) return;
         
-        // 从撤销栈中弹出最近的操作记录
-        Move m = state.undoStack.pop();
-
-        // 处理发牌操作的撤销 (from == -1 && to == -1)
-        if (m.from == -1 && m.to == -1) {
-            // 从每一列取最后一张牌放回牌堆
-            for (int i = 0; i < 10; i++) {
-                if (!state.columns[i].isEmpty()) {
-                    Card card = state.columns[i].pop();//默认删除最后一张
-                    card.flip(); // 翻回背面
-                    state.stock.push(card);
-                }
-            }
+        // 弹出最近的操作记录，撤销后的操作留在时间线上，可以重做
+        long m = state.undoLog.pop();
+        revert(m);
+        timeline.future.push(m);
+        timeline.passed(state);
+
+        // 撤销移除牌组时扣回加上的100分
+        if (UndoLog.kind(m) == UndoLog.REMOVE) {
+            state.score -= 100;
+        }
+        // 撤销操作恢复1分
+        state.score += 1;
+        checkHash();
+        if (listener != null) listener.undone();
+    }
+
+    /**
+     * 在牌面上撤销一条已经弹出的操作记录，不计分
+     */
+    private void revert(long m) {
+        Board board = state.board;
+        int kind = UndoLog.kind(m);
+
+        // 处理发牌操作的撤销
+        if (kind == UndoLog.DEAL) {
+            // 按发牌的逆序（第10列到第1列）把每列最后一张牌翻回背面放回牌堆
+            // 保证牌堆顺序与发牌前完全一致
+            board.undealRow();
             // 恢复剩余发牌次数
             state.remainingDeals++;
         } 
-        // 处理移除完整牌组操作的撤销 (to == -2)
-        else if (m.to == -2) {
-            // 将移除的牌组放回原来的列
-            Stack<Card> column = state.columns[m.from];
-            for (Card card : m.movedCards) {
-                column.push(card);
+        // 处理移除完整牌组操作的撤销
+        else if (kind == UndoLog.REMOVE) {
+            int col = UndoLog.from(m);
+            // 移除牌组时自动翻开的牌需要先翻回背面
+            if (UndoLog.flipped(m)) {
+                board.hideTop(col);
             }
-            // 恢复完成牌组计数和分数
+            // 将移除的K到A放回原来的列
+            board.restoreRun(col, UndoLog.suit(m));
+            // 恢复完成牌组计数
             state.completedSets--;
-            state.score -= 100;
         }
         else {
             // 普通移动操作的撤销
-            Stack<Card> src = state.columns[m.from]; // 原来的源列
-            Stack<Card> dst = state.columns[m.to];   // 原来的目标列
-
+            int from = UndoLog.from(m);
+            // 精确恢复翻牌状态：移动时翻开的牌需要先翻回背面
+            if (UndoLog.flipped(m)) {
+                board.hideTop(from);
+            }
             // 将移动的牌从目标列移回源列
-            for (int i = 0; i < m.movedCards.size(); i++) {
-                src.push(dst.pop());
+            board.moveCards(UndoLog.to(m), from, UndoLog.count(m));
+        }
+    }
+
+    /**
+     * 在牌面上重新执行一条时间线上的操作记录，不做规则检查，也不计分
+     */
+    private void apply(long m) {
+        switch (UndoLog.kind(m)) {
+            case UndoLog.DEAL:
+                applyDeal();
+                break;
+            case UndoLog.REMOVE:
+                removeSet(UndoLog.from(m));
+                break;
+            default:
+                applyMove(UndoLog.from(m), UndoLog.to(m), UndoLog.count(m));
+                break;
+        }
+    }
+
+    /**
+     * 按计分规则，一条操作记录对分数的影响：移动扣1分，移除牌组加100分，发牌不计分
+     * 开局分数加上撤销记录中每条操作的影响，就是沿当前路线走到这里的分数（不含撤销时奖励的分数）
+     */
+    public static int scoreDelta(long m) {
+        switch (UndoLog.kind(m)) {
+            case UndoLog.MOVE: return -1;
+            case UndoLog.REMOVE: return 100;
+            default: return 0;
+        }
+    }
+
+    /**
+     * 检查是否有可以重做的操作
+     * @return 撤销过且之后没有执行新的操作时返回true
+     */
+    public boolean canRedo() {
+        return !timeline.future.isEmpty();
+    }
+
+    /**
+     * 重做最近一次撤销的操作
+     * 
+     * 与撤销一样每次处理一条记录：撤销时如果先撤销了移除牌组，重做时也是先重做移动，再重做移除
+     * 重做按正常的计分规则计分，并像玩家操作一样通知监听器
+     * 
+     * @return 重做成功返回true，没有可以重做的操作时返回false
+     */
+    public boolean redo() {
+        if (timeline.future.isEmpty()) return false;
+        long m = timeline.future.pop();
+        apply(m);
+        state.score += scoreDelta(m);
+        checkHash();
+        if (listener != null) {
+            switch (UndoLog.kind(m)) {
+                case UndoLog.DEAL: listener.dealt(); break;
+                case UndoLog.REMOVE: listener.setRemoved(UndoLog.from(m)); break;
+                default: listener.moved(UndoLog.from(m), UndoLog.to(m), UndoLog.count(m)); break;
             }
+        }
+        return true;
+    }
 
-            // 精确恢复翻牌状态：只有当移动前是背面朝上时才翻回背面
-            if (m.flipped && m.flippedCard != null) {
-                if (!m.wasFaceUpBeforeMove) {
-                    m.flippedCard.flip();
-                }
+    /**
+     * 获取当前在时间线上的位置
+     * @return 从开局到现在执行过的操作条数（移除完整牌组也算一条）
+     */
+    public int getPosition() {
+        return state.undoLog.size();
+    }
+
+    /**
+     * 获取时间线的总长度
+     * @return 当前位置加上可以重做的操作条数
+     */
+    public int getTimelineLength() {
+        return timeline.length(state);
+    }
+
+    /**
+     * 跳转到时间线上的任意位置
+     * 
+     * 从目标位置之前最近的检查点恢复后重放，或者从当前位置逐步撤销、重做，选择步数较少的一种，
+     * 因此无论对局多长，跳转最多执行检查点间隔那么多步牌面操作，并且只在最后通知一次监听器
+     * 不保存检查点的对局只能逐步撤销、重做，步数与跳转的距离成正比
+     * 跳转前后的位置都留在时间线上，之后可以继续跳转或重做
+     * 
+     * 跳转后的分数按计分规则由当前分数推算（移动扣1分，移除牌组加100分），
+     * 与位置一一对应，不包括逐步撤销时每步奖励的1分
+     * 
+     * @param index 目标位置，0表示开局，getTimelineLength()表示最后一步之后
+     * @throws IndexOutOfBoundsException 目标位置超出时间线
+     */
+    public void seek(int index) {
+        UndoLog history = state.undoLog;
+        UndoLog future = timeline.future;
+        int position = history.size();
+        if (index < 0 || index > timeline.length(state)) throw new IndexOutOfBoundsException(index);
+        if (index == position) return;
+
+        int checkpoint = timeline.checkpointBefore(index);
+        if (checkpoint >= 0 && index - checkpoint < Math.abs(index - position)) {
+            // 先只在撤销记录和时间线之间挪动操作记录，使撤销记录正好有index条，同时推算分数
+            while (history.size() > index) {
+                long m = history.pop();
+                future.push(m);
+                state.score -= scoreDelta(m);
+            }
+            while (history.size() < index) {
+                long m = future.pop();
+                history.push(m);
+                state.score += scoreDelta(m);
+            }
+            // 再从检查点恢复牌面，重放检查点之后的操作
+            long[] tail = new long[index - checkpoint];
+            for (int i = 0; i < tail.length; i++) tail[i] = history.get(checkpoint + i);
+            history.truncate(checkpoint);
+            timeline.restore(checkpoint, state);
+            for (long m : tail) apply(m);
+        } else {
+            while (history.size() > index) {
+                long m = history.pop();
+                revert(m);
+                future.push(m);
+                state.score -= scoreDelta(m);
+                timeline.passed(state);
+            }
+            while (history.size() < index) {
+                long m = future.pop();
+                apply(m);
+                state.score += scoreDelta(m);
             }
         }
-        // 撤销操作恢复1分
-        state.score += 1;
+        checkHash();
+        if (listener != null) listener.jumped();
     }
 
+    /**
+     * 提示搜索的预算：提示在事件分发线程中执行，要在200毫秒内给出答案，不能让界面卡顿
+     */
+    private static final Budget HINT_BUDGET = Budget.millis(200).withNodes(200_000);
+
+    /**
+     * 提示使用的求解器，第一次提示时创建，之后复用其堆外置换表
+     */
+    private Solver hintSolver;
+
     /**
      * 获取游戏提示信息
+     * 
+     * 使用求解器在限定的时间内搜索获胜路线：
+     * - 找到获胜路线时，给出路线上的第一步
+     * - 搜索完毕仍没有找到获胜路线时，提醒玩家可以考虑撤销（剪枝是启发式的，不断定局面已经输了）
+     * - 超出搜索限制时，给出目前进展最好的路线上的第一步
+     * 
      * @return String 提示信息，如果没有可用移动则返回"没有可用的移动提示"
+     * @see Solver
      */
     public String hint() {
-        // 遍历所有列，寻找有效的移动
-        for (int from = 0; from < 10; from++) {
-            // 跳过空列
-            if (state.columns[from].isEmpty()) continue;
-            
-            // 检查从该列可以移动的最大连续牌组
-            int maxCount = 1;
-            Card baseCard = state.columns[from].peek();
-            
-            // 从后往前检查连续递减的牌组
-            for (int i = state.columns[from].size() - 2; i >= 0; i--) {
-                Card current = state.columns[from].get(i);
-                Card next = state.columns[from].get(i + 1);
-                // 检查当前牌和下一张牌是否连续递减且都是正面朝上
-                if (current.isFaceUp() && next.getRank() == current.getRank() + 1) {
-                    maxCount++;
-                } else {
-                    break; // 不连续时停止检查
-                }
-            }
-            
-            // 检查是否可以移动到其他列
-            for (int to = 0; to < 10; to++) {
-                if (from == to) continue; // 跳过源列和目标列相同的情况
-                
-                // 如果可以移动，返回提示信息
-                if (canMove(from, to, maxCount)) {
-                    return "提示: 可以将第" + (from + 1) + "列的" + maxCount + "张牌移动到第" + (to + 1) + "列";
-                }
-            }
+        if (hintSolver == null) {
+            hintSolver = new Solver(HINT_BUDGET.maxNodes(), HINT_BUDGET.timeLimitNanos() / 1_000_000L);
+            hintSolver.setEvaluator(WeightedEvaluator.loadDefault());
+        }
+        return describeHint(hintSolver.solve(state, HINT_BUDGET));
+    }
+
+    /**
+     * 把求解结果转换为提示信息，供同步提示和后台提示共用
+     * 
+     * @param result 求解结果
+     * @return String 提示信息
+     */
+    public static String describeHint(Solver.Result result) {
+        if (!result.hasMove()) {
+            return result.status == Solver.Status.NO_WIN ? "没有找到获胜路线，可以考虑撤销或开始新游戏" : "没有可用的移动提示";
         }
         
-        // 没有找到可用移动
-        return "没有可用的移动提示";
+        String suffix = "";
+        if (result.status == Solver.Status.WIN) {
+            suffix = "（沿此路线可以获胜）";
+        } else if (result.status == Solver.Status.NO_WIN) {
+            suffix = "（没有找到获胜路线，可以考虑撤销）";
+        }
+        if (result.isDeal()) {
+            return "提示: 现在发牌" + suffix;
+        }
+        return "提示: 可以将第" + (result.from + 1) + "列的" + result.count + "张牌移动到第" + (result.to + 1) + "列" + suffix;
     }
     
     /**
@@ -310,6 +467,22 @@ public class SpiderGame {
      * @return boolean 发牌成功返回true，失败返回false
      */
     public boolean deal() {
+        if (!canDeal()) {
+            return false;
+        }
+        timeline.branch(state.undoLog.size());
+        applyDeal();
+        checkHash();
+        if (listener != null) listener.dealt();
+        return true;
+    }
+
+    /**
+     * 检查当前是否可以发牌
+     * @return 还有发牌次数、每列都有牌且牌堆足够时返回true
+     */
+    private boolean canDeal() {
+        Board board = state.board;
         // 检查剩余发牌次数
         if (state.remainingDeals <= 0) {
             return false; // 没有剩余发牌次数了
@@ -317,91 +490,125 @@ public class SpiderGame {
         
         // 检查每一列是否至少有一张牌
         for (int i = 0; i < 10; i++) {
-            if (state.columns[i].isEmpty()) {
+            if (board.isEmpty(i)) {
                 return false; // 有列是空的，不能发牌
             }
         }
         
         // 检查牌堆是否有足够的牌（至少10张）
-        if (state.stock.size() < 10) {
-            return false; // 牌堆的牌不够了
-        }
-        
-        // 记录发牌操作，用于撤销
-        List<Card> dealtCards = new ArrayList<>();
-        
+        return board.stockSize() >= 10; // 牌堆的牌不够时不能发牌
+    }
+
+    /**
+     * 发牌并记录到撤销记录，不做条件检查
+     */
+    private void applyDeal() {
         // 给每一列发一张明牌
-        for (int i = 0; i < 10; i++) {
-            Card card = state.stock.pop();
-            card.flip(); // 翻成正面显示
-            state.columns[i].push(card);
-            dealtCards.add(card);
-        }
+        state.board.dealRow();
         
-        // 将发牌操作添加到撤销栈(from=-1, to=-1表示发牌操作)
-        state.undoStack.push(new Move(-1, -1, dealtCards, false, true, null));
         // 减少剩余发牌次数
         state.remainingDeals--;
-        
-        return true;
+        // 将发牌操作添加到撤销记录
+        record(UndoLog.deal());
     }
     
     /**
      * 检查并移除所有完整的牌组（K到A）
+     * 
+     * 完整牌组只可能出现在上一次移动的目标列或刚发过牌的列上，
+     * 因此只检查牌面记录的“放入过牌”的列，每列只需比较一次缓存的可移动牌组长度
+     * 
      * @return boolean 如果移除了任何牌组返回true，否则返回false
      */
     public boolean checkAndRemoveCompleteSets() {
         boolean removed = false; // 标记是否移除了牌组
+        Board board = state.board;
         
-        // 遍历所有列，寻找完整的牌组
-        for (int i = 0; i < 10; i++) {
-            Stack<Card> column = state.columns[i];
-            if (column.isEmpty()) continue; // 跳过空列
+        // 依次处理放入过牌的列
+        int dirty = board.takeDirtyColumns();
+        while (dirty != 0) {
+            int i = Integer.numberOfTrailingZeros(dirty); // 最低位的1对应的列
+            dirty &= dirty - 1;                           // 清除最低位的1
             
-            // 检查是否有完整的K到A序列（13张牌）
-            if (column.size() >= 13 && column.peek().getRank() == 1) { // 顶部是A
-                boolean isComplete = true;
-                // 获取序列的花色（序列中的牌都必须是同花色）
-                Card.Suit suit = column.get(column.size() - 13).getSuit(); // 序列的花色
-                
-                // 从A开始往上检查是否是KQJ...2A序列
-                for (int j = column.size() - 13; j < column.size(); j++) {
-                    Card card = column.get(j);
-                    // 计算期望的牌点数：K(13)到A(1)
-                    int expectedRank = 13 - (j - (column.size() - 13)); // K(13)到A(1)
-                    
-                    // 检查牌的点数、花色和朝向是否正确
-                    if (card.getRank() != expectedRank || card.getSuit() != suit || !card.isFaceUp()) {
-                        isComplete = false;
-                        break;
-                    }
-                }
-                
-                // 如果找到完整的牌组，移除它
-                if (isComplete) {
-                    // 移除完整的牌组
-                    List<Card> removedCards = new ArrayList<>();
-                    for (int j = 0; j < 13; j++) {
-                        removedCards.add(column.pop());
-                    }
-                    
-                    // 记录移除操作以便撤销(to=-2表示移到完成区域)
-                    state.undoStack.push(new Move(i, -2, removedCards, false, true, null));
-                    // 增加完成牌组计数和分数
-                    state.completedSets++;
-                    state.score += 100; // 移除完整牌组加分
-                    removed = true;
-                    
-                    // 如果该列还有牌且是背面朝上，自动翻成正面
-                    if (!column.isEmpty() && !column.peek().isFaceUp()) {
-                        column.peek().flip();
-                    }
-                }
-            }
+            // 列顶的同花色连续递减牌组达到13张，即为完整的K到A
+            if (!board.hasCompleteRun(i)) continue;
+            
+            timeline.branch(state.undoLog.size());
+            removeSet(i);
+            state.score += 100; // 移除完整牌组加分
+            removed = true;
+            if (listener != null) listener.setRemoved(i);
         }
         
+        if (removed) checkHash();
         return removed;
     }
+
+    /**
+     * 移除指定列顶部的完整牌组并记录到撤销记录，不计分
+     */
+    private void removeSet(int col) {
+        Board board = state.board;
+        int suit = board.suitAt(col, board.size(col) - 1); // 牌组的花色
+        board.removeRun(col);
+        
+        // 如果该列还有牌且是背面朝上，自动翻成正面
+        boolean flipped = board.revealTop(col);
+        
+        // 增加完成牌组计数
+        state.completedSets++;
+        // 记录移除操作以便撤销，同时记录花色和翻牌信息
+        record(UndoLog.remove(col, suit, flipped));
+    }
+
+    /**
+     * 快速重放一条操作记录，用于从对局记录恢复游戏
+     * 
+     * 与move、deal、checkAndRemoveCompleteSets执行相同的规则检查和牌面修改，并同样记录到撤销记录，
+     * 但不计分也不做哈希校验，分数由调用方在重放结束后一次性设置；重放的操作同样会丢弃可以重做的操作
+     * 移除完整牌组的记录只在该列顶部确实是同花色K到A时才接受
+     * 
+     * @param record UndoLog编码的操作记录，只使用类型、列和张数，翻牌和花色按实际牌面重新计算
+     * @return 操作合法并已执行返回true，否则返回false且不修改任何状态
+     */
+    public boolean replay(long record) {
+        Board board = state.board;
+        int from = UndoLog.from(record);
+        switch (UndoLog.kind(record)) {
+            case UndoLog.DEAL:
+                if (!canDeal()) return false;
+                timeline.branch(state.undoLog.size());
+                applyDeal();
+                return true;
+            case UndoLog.REMOVE:
+                if (from >= Board.COLUMNS || !board.hasCompleteRun(from)) return false;
+                timeline.branch(state.undoLog.size());
+                removeSet(from);
+                return true;
+            case UndoLog.MOVE:
+                int to = UndoLog.to(record);
+                if (from >= Board.COLUMNS || to >= Board.COLUMNS || from == to
+                        || !canMove(from, to, UndoLog.count(record))) {
+                    return false;
+                }
+                timeline.branch(state.undoLog.size());
+                applyMove(from, to, UndoLog.count(record));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * 哈希校验模式下，用完整重算的结果校验增量维护的哈希值和每列元数据
+     * 只有开启 -Dspider.checkHash=true 时才会执行，正常游戏没有额外开销
+     */
+    private void checkHash() {
+        if (Board.CHECK_HASH) {
+            state.board.verifyHash();
+            state.board.verifyMetadata();
+        }
+    }
     
     // 检查游戏是否胜利
     public boolean isGameWon() {
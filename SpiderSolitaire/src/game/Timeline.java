@@ -0,0 +1,109 @@
+package game;
+
+import java.util.ArrayList;
+
+/**
+ * 对局时间线
+ *
+ * 时间线上的第i个位置表示执行了前i条操作记录之后的局面，当前位置就是撤销记录的条数：
+ * - 当前位置之前的操作保存在GameState的撤销记录中
+ * - 撤销掉的操作按UndoLog的编码保存在future中，栈顶是下一步可以重做的操作
+ * - 每隔interval个位置保存一个检查点（牌面、已完成牌组数、剩余发牌次数），
+ *   跳转时从目标位置之前最近的检查点恢复，最多重放interval步
+ *
+ * 执行新的操作（而不是重做）时时间线从当前位置分叉：丢弃future和当前位置之后的检查点
+ * 间隔为0时不保存检查点，用于大量创建对局的模拟：重做照常可用，跳转只能逐步撤销或重做
+ * 只由SpiderGame使用，不需要线程安全
+ */
+final class Timeline {
+    /**
+     * 默认的检查点间隔
+     */
+    static final int DEFAULT_INTERVAL = Integer.getInteger("spider.timelineInterval", 32);
+
+    /**
+     * 检查点：某个位置上的局面
+     */
+    private static final class Checkpoint {
+        final Board board;
+        final int completedSets;
+        final int remainingDeals;
+
+        Checkpoint(GameState state) {
+            board = new Board(state.board);
+            completedSets = state.completedSets;
+            remainingDeals = state.remainingDeals;
+        }
+    }
+
+    final int interval;
+
+    /**
+     * 可以重做的操作，栈顶是下一步
+     */
+    final UndoLog future = new UndoLog();
+
+    /**
+     * 第k项是位置k*interval上的检查点，还没有经过该位置时为null
+     */
+    private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+
+    /**
+     * @param interval 检查点间隔，0表示不保存检查点
+     */
+    Timeline(int interval) {
+        if (interval < 0) throw new IllegalArgumentException("检查点间隔不能为负数: " + interval);
+        this.interval = interval;
+    }
+
+    /**
+     * @return 时间线的总长度，即当前位置加上可以重做的步数
+     */
+    int length(GameState state) {
+        return state.undoLog.size() + future.size();
+    }
+
+    /**
+     * 局面到达新位置时调用：位置是间隔的整数倍且还没有检查点时，保存一个
+     */
+    void passed(GameState state) {
+        if (interval == 0) return;
+        int position = state.undoLog.size();
+        if (position % interval != 0) return;
+        int slot = position / interval;
+        while (checkpoints.size() <= slot) checkpoints.add(null);
+        if (checkpoints.get(slot) == null) checkpoints.set(slot, new Checkpoint(state));
+    }
+
+    /**
+     * 在当前位置执行了新的操作，丢弃之后的时间线
+     * @param position 执行新操作之前的位置
+     */
+    void branch(int position) {
+        future.clear();
+        if (interval == 0) return;
+        int keep = position / interval + 1; // 位置不超过position的检查点
+        while (checkpoints.size() > keep) checkpoints.remove(checkpoints.size() - 1);
+    }
+
+    /**
+     * @return 不超过index的最近检查点的位置，没有时返回-1
+     */
+    int checkpointBefore(int index) {
+        if (interval == 0) return -1;
+        for (int slot = Math.min(index / interval, checkpoints.size() - 1); slot >= 0; slot--) {
+            if (checkpoints.get(slot) != null) return slot * interval;
+        }
+        return -1;
+    }
+
+    /**
+     * 把checkpointBefore返回的位置上的检查点恢复到state中，不修改分数和撤销记录
+     */
+    void restore(int position, GameState state) {
+        Checkpoint checkpoint = checkpoints.get(position / interval);
+        state.board.copyFrom(checkpoint.board);
+        state.completedSets = checkpoint.completedSets;
+        state.remainingDeals = checkpoint.remainingDeals;
+    }
+}
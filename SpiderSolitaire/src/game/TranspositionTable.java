@@ -0,0 +1,231 @@
+package game;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外置换表
+ *
+ * 记录搜索过的局面哈希值，数据全部存放在堆外的直接内存（DirectByteBuffer）中，
+ * 表再大也不会增加GC的负担，内存占用在创建时按兆字节固定下来：
+ * - 每个条目16字节：一个字保存“哈希值 异或 数据字”，另一个字保存数据字（代数和深度）
+ * - 每4个条目组成一个64字节的桶，正好是一条缓存行
+ * - 桶内前3格按深度优先替换：新局面越靠近根节点（子树越大）越值得保留；
+ *   新局面比这3格都更深时，写入总是替换的第4格
+ * - 读写都不加锁，多个线程同时写同一格可能产生残缺条目，
+ *   残缺条目的异或校验不会通过，只会被当作未命中，不影响结果的正确性
+ * - 清空只需把代数加一，旧代的条目自动视为空格，不需要遍历整张表
+ *
+ * 超过2GB的表拆成多个1GB的分段。使用大表时需要用 -XX:MaxDirectMemorySize 调高直接内存上限
+ */
+public final class TranspositionTable {
+    /**
+     * 按本机字节序、以long为单位访问ByteBuffer，支持acquire/release语义
+     */
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_SHIFT = 6; // 每个桶64字节
+    private static final int SEGMENT_SHIFT = 30; // 每个分段1GB
+    private static final long MEGABYTE = 1L << 20;
+
+    /**
+     * 深度换算为“剩余深度”时使用的上限，剩余深度越大表示越靠近根节点
+     */
+    private static final int MAX_DRAFT = 0xFFFF;
+
+    private final ByteBuffer[] segments;
+    private final long bucketMask;
+    private final int bucketsPerSegmentShift;
+    private final long capacity;
+
+    /**
+     * 当前代数，写入的条目会带上代数，代数不同的条目视为空格
+     */
+    private volatile int generation = 1;
+
+    // 统计信息
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder filled = new LongAdder();
+
+    /**
+     * 创建指定大小的置换表
+     * 实际大小向下取整到2的幂，至少为1MB
+     * @param megabytes 表占用的直接内存（MB）
+     */
+    public TranspositionTable(long megabytes) {
+        long bytes = Long.highestOneBit(Math.max(megabytes, 1) * MEGABYTE);
+        long buckets = bytes >>> BUCKET_SHIFT;
+        int segmentShift = Math.min(SEGMENT_SHIFT, 63 - Long.numberOfLeadingZeros(bytes));
+        int segmentCount = (int) (bytes >>> segmentShift);
+
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = ByteBuffer.allocateDirect(1 << segmentShift).order(ByteOrder.nativeOrder());
+        }
+        bucketMask = buckets - 1;
+        bucketsPerSegmentShift = segmentShift - BUCKET_SHIFT;
+        capacity = buckets * BUCKET_ENTRIES;
+    }
+
+    /**
+     * 按预计要记录的局面数量选择表的大小
+     * @param expectedEntries 预计的局面数量
+     * @param maxMegabytes 内存上限（MB）
+     * @return 置换表
+     */
+    public static TranspositionTable forEntries(long expectedEntries, long maxMegabytes) {
+        long megabytes = (expectedEntries * 2 * ENTRY_BYTES + MEGABYTE - 1) / MEGABYTE;
+        // 向上取整到2的幂，避免构造函数向下取整后容量不足
+        megabytes = Long.highestOneBit(Math.max(megabytes, 1) * 2 - 1);
+        return new TranspositionTable(Math.min(megabytes, maxMegabytes));
+    }
+
+    /**
+     * 记录一个局面
+     * @param key 局面哈希值
+     * @param depth 局面所在的搜索深度，根节点为0
+     * @return true表示之前没有记录过（本次新加入），false表示已经存在
+     */
+    public boolean add(long key, int depth) {
+        if (key == 0) key = 1;
+        long bucket = (key ^ (key >>> 32)) & bucketMask;
+        ByteBuffer segment = segments[(int) (bucket >>> bucketsPerSegmentShift)];
+        int base = (int) ((bucket << BUCKET_SHIFT) & (segment.capacity() - 1));
+        int gen = generation;
+        probes.increment();
+
+        int empty = -1;
+        int victim = -1;
+        int victimDraft = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int offset = base + i * ENTRY_BYTES;
+            long data = (long) LONGS.getAcquire(segment, offset + 8);
+            if (data == 0 || (int) (data >>> 32) != gen) {
+                if (empty < 0) empty = i;
+                continue;
+            }
+            long stored = (long) LONGS.getAcquire(segment, offset) ^ data;
+            if (stored == key) {
+                hits.increment();
+                return false;
+            }
+            int draft = (int) data & MAX_DRAFT;
+            if (i < BUCKET_ENTRIES - 1 && draft < victimDraft) {
+                victim = i;
+                victimDraft = draft;
+            }
+        }
+
+        int draft = Math.max(MAX_DRAFT - depth, 0);
+        int slot;
+        if (empty >= 0) {
+            slot = empty;
+            filled.increment();
+        } else {
+            // 桶已满：新局面不比最浅的深度优先格更深时替换它，否则写入总是替换格
+            slot = draft >= victimDraft ? victim : BUCKET_ENTRIES - 1;
+            collisions.increment();
+        }
+
+        int offset = base + slot * ENTRY_BYTES;
+        long data = ((long) gen << 32) | draft;
+        LONGS.setRelease(segment, offset + 8, data);
+        LONGS.setRelease(segment, offset, key ^ data);
+        return true;
+    }
+
+    /**
+     * 清空所有记录并重置统计信息
+     * 只递增代数，不遍历内存，耗时与表的大小无关
+     * 调用时不能有其他线程正在使用该表
+     */
+    public void clear() {
+        int next = generation + 1;
+        generation = next == 0 ? 1 : next;
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+        filled.reset();
+    }
+
+    /**
+     * @return 表的总条目数
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 表占用的直接内存（字节）
+     */
+    public long sizeInBytes() {
+        return capacity * ENTRY_BYTES;
+    }
+
+    /**
+     * @return 自上次清空以来的统计信息快照
+     */
+    public Stats stats() {
+        return new Stats(probes.sum(), hits.sum(), collisions.sum(), filled.sum(), capacity);
+    }
+
+    /**
+     * 置换表统计信息
+     */
+    public static final class Stats {
+        /** 查询次数 */
+        public final long probes;
+        /** 命中次数（局面已存在） */
+        public final long hits;
+        /** 写入时桶已满、覆盖了其他局面的次数 */
+        public final long collisions;
+        /** 已占用的条目数 */
+        public final long filled;
+        /** 总条目数 */
+        public final long capacity;
+
+        Stats(long probes, long hits, long collisions, long filled, long capacity) {
+            this.probes = probes;
+            this.hits = hits;
+            this.collisions = collisions;
+            this.filled = Math.min(filled, capacity);
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return 命中率
+         */
+        public double hitRate() {
+            return probes == 0 ? 0 : (double) hits / probes;
+        }
+
+        /**
+         * @return 冲突率：每次写入中覆盖已有局面的比例
+         */
+        public double collisionRate() {
+            long stores = probes - hits;
+            return stores == 0 ? 0 : (double) collisions / stores;
+        }
+
+        /**
+         * @return 填充率
+         */
+        public double fillRatio() {
+            return capacity == 0 ? 0 : (double) filled / capacity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("查询 %,d 次, 命中率 %.1f%%, 冲突率 %.1f%%, 填充率 %.1f%%",
+                    probes, hitRate() * 100, collisionRate() * 100, fillRatio() * 100);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 撤销记录
+ *
+ * 每步操作压缩为一个long，存放在可增长的环形数组中，不为每一步创建对象：
+ * - 位0-1：操作类型（MOVE=普通移动，DEAL=发牌，REMOVE=移除完整牌组）
+ * - 位2-5：源列（移动）或牌组所在的列（移除牌组）
+ * - 位6-9：目标列（移动）
+ * - 位10-13：张数（移动）
+ * - 位14：是否翻开了一张暗牌，撤销时需要翻回背面
+ * - 位15-16：被移除牌组的花色序号（移除牌组）
+ *
+ * 内存中最多保存memoryLimit条记录，超出时把最早的一段（SEGMENT条）写到临时文件，
+ * 撤销到内存为空时再把最近写出的一段读回来，因此撤销深度不受内存限制，
+ * 压栈和出栈均摊O(1)。内存上限可以用 -Dspider.undoMemory=条数 调整
+ */
+public final class UndoLog {
+    public static final int MOVE = 0;
+    public static final int DEAL = 1;
+    public static final int REMOVE = 2;
+
+    /**
+     * 默认的内存记录条数上限（每条8字节）
+     */
+    public static final int DEFAULT_MEMORY_LIMIT = Integer.getInteger("spider.undoMemory", 1 << 16);
+
+    /**
+     * 每次写出或读回的记录条数
+     */
+    private static final int SEGMENT = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int memoryLimit;
+
+    /**
+     * 环形数组，长度为2的幂；start为最早一条记录的下标，count为内存中的记录数
+     */
+    private long[] ring = new long[INITIAL_CAPACITY];
+    private int start;
+    private int count;
+
+    /**
+     * 已写到临时文件中的记录数，它们比内存中的所有记录都早
+     */
+    private int spilled;
+    private Path spillFile;
+    private FileChannel spillChannel;
+
+    /**
+     * 使用默认内存上限创建撤销记录
+     */
+    public UndoLog() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * 创建撤销记录
+     * @param memoryLimit 内存中最多保存的记录条数，不小于2*SEGMENT
+     */
+    public UndoLog(int memoryLimit) {
+        this.memoryLimit = Math.max(memoryLimit, 2 * SEGMENT);
+    }
+
+    // ---------------------------------------------------------------
+    // 编码
+    // ---------------------------------------------------------------
+
+    /**
+     * 编码一次普通移动
+     */
+    public static long move(int from, int to, int count, boolean flipped) {
+        return MOVE | from << 2 | to << 6 | count << 10 | (flipped ? 1 << 14 : 0);
+    }
+
+    /**
+     * 编码一次发牌
+     */
+    public static long deal() {
+        return DEAL | 10 << 10;
+    }
+
+    /**
+     * 编码一次移除完整牌组
+     */
+    public static long remove(int col, int suit, boolean flipped) {
+        return REMOVE | col << 2 | 13 << 10 | (flipped ? 1 << 14 : 0) | suit << 15;
+    }
+
+    public static int kind(long entry) {
+        return (int) entry & 0x3;
+    }
+
+    /**
+     * @return 源列；发牌为-1
+     */
+    public static int from(long entry) {
+        return kind(entry) == DEAL ? -1 : (int) (entry >> 2) & 0xF;
+    }
+
+    /**
+     * @return 目标列；发牌为-1，移除牌组为-2
+     */
+    public static int to(long entry) {
+        switch (kind(entry)) {
+            case DEAL: return -1;
+            case REMOVE: return -2;
+            default: return (int) (entry >> 6) & 0xF;
+        }
+    }
+
+    /**
+     * @return 张数；发牌为10，移除牌组为13
+     */
+    public static int count(long entry) {
+        return (int) (entry >> 10) & 0xF;
+    }
+
+    public static boolean flipped(long entry) {
+        return (entry & (1 << 14)) != 0;
+    }
+
+    public static int suit(long entry) {
+        return (int) (entry >> 15) & 0x3;
+    }
+
+    // ---------------------------------------------------------------
+    // 栈操作
+    // ---------------------------------------------------------------
+
+    /**
+     * @return 记录总数，包括写到临时文件中的记录
+     */
+    public int size() {
+        return spilled + count;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 压入一条记录
+     */
+    public void push(long entry) {
+        if (count == memoryLimit) spill();
+        if (count == ring.length) grow();
+        ring[(start + count++) & (ring.length - 1)] = entry;
+    }
+
+    /**
+     * 弹出最近的一条记录
+     * @throws IllegalStateException 没有记录
+     */
+    public long pop() {
+        long entry = peek();
+        count--;
+        return entry;
+    }
+
+    /**
+     * 查看最近的一条记录
+     * @throws IllegalStateException 没有记录
+     */
+    public long peek() {
+        if (count == 0) {
+            if (spilled == 0) throw new IllegalStateException("没有可撤销的操作");
+            reload();
+        }
+        return ring[(start + count - 1) & (ring.length - 1)];
+    }
+
+    /**
+     * 按时间顺序读取一条记录，第0条最早
+     * 已写到临时文件中的记录需要读文件，只适合保存存档等不频繁的场景
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        if (index >= spilled) return ring[(start + index - spilled) & (ring.length - 1)];
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            readFully(buffer, (long) index * 8);
+            return buffer.getLong(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取撤销记录失败", e);
+        }
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void clear() {
+        start = 0;
+        count = 0;
+        spilled = 0;
+    }
+
+    /**
+     * 丢弃最近的记录，只保留最早的size条，不读临时文件
+     * @param size 保留的条数
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > size()) throw new IndexOutOfBoundsException(size);
+        if (size >= spilled) {
+            count = size - spilled;
+        } else {
+            // 内存中的记录全部丢弃，需要时再从临时文件读回
+            count = 0;
+            spilled = size;
+        }
+    }
+
+    /**
+     * 复制另一份撤销记录的全部内容
+     */
+    public void copyFrom(UndoLog other) {
+        clear();
+        for (int i = 0; i < other.size(); i++) push(other.get(i));
+    }
+
+    private void grow() {
+        long[] bigger = new long[ring.length * 2];
+        for (int i = 0; i < count; i++) bigger[i] = ring[(start + i) & (ring.length - 1)];
+        ring = bigger;
+        start = 0;
+    }
+
+    /**
+     * 把内存中最早的SEGMENT条记录追加到临时文件
+     */
+    private void spill() {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(SEGMENT * 8);
+            for (int i = 0; i < SEGMENT; i++) buffer.putLong(ring[(start + i) & (ring.length - 1)]);
+            buffer.flip();
+            FileChannel channel = channel();
+            long position = (long) spilled * 8;
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写出撤销记录失败", e);
+        }
+        start = (start + SEGMENT) & (ring.length - 1);
+        count -= SEGMENT;
+        spilled += SEGMENT;
+    }
+
+    /**
+     * 内存为空时，把临时文件中最近的SEGMENT条记录读回内存
+     */
+    private void reload() {
+        int n = Math.min(SEGMENT, spilled);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(n * 8);
+            readFully(buffer, (long) (spilled - n) * 8);
+            start = 0;
+            for (int i = 0; i < n; i++) ring[i] = buffer.getLong(i * 8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读回撤销记录失败", e);
+        }
+        count = n;
+        spilled -= n;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = channel();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("撤销记录文件不完整");
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (spillChannel == null) {
+            spillFile = Files.createTempFile("spider-undo", ".log");
+            spillFile.toFile().deleteOnExit();
+            spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        return spillChannel;
+    }
+}
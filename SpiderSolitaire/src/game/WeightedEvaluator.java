@@ -0,0 +1,174 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * 加权线性评估函数
+ *
+ * 评分为以下特征的加权和，特征都直接取自牌面的每列元数据，评估一次只需遍历10列：
+ * - completedSet：已完成的牌组数
+ * - faceDown：剩余暗牌数（权重通常为负）
+ * - emptyColumn：空列数
+ * - runLink：各列列顶同花色连续牌组中的连接数（长度减1）
+ *
+ * 默认权重与求解器原来的进展评分相同；离线调整得到的权重以properties文件保存，
+ * 提示引擎启动时通过loadDefault()读取，文件不存在时使用默认权重
+ * 实例不可变，可以在多个线程中共享
+ */
+public final class WeightedEvaluator implements Evaluator {
+    /**
+     * 特征名称，也是权重文件中的键，顺序与weights()一致
+     */
+    public static final String[] FEATURES = {"completedSet", "faceDown", "emptyColumn", "runLink"};
+
+    /**
+     * 默认权重
+     */
+    public static final WeightedEvaluator DEFAULT = new WeightedEvaluator(1000, -20, 30, 5);
+
+    /**
+     * 默认的权重文件
+     */
+    public static final String DEFAULT_FILE = "data/evaluator.properties";
+
+    /**
+     * 指定权重文件路径的系统属性，未设置时使用DEFAULT_FILE
+     */
+    public static final String FILE_PROPERTY = "spider.evaluator";
+
+    private final int completedSet;
+    private final int faceDown;
+    private final int emptyColumn;
+    private final int runLink;
+
+    /**
+     * 构造函数
+     * @param completedSet 每个已完成牌组的权重
+     * @param faceDown 每张暗牌的权重
+     * @param emptyColumn 每个空列的权重
+     * @param runLink 列顶同花色牌组中每个连接的权重
+     */
+    public WeightedEvaluator(int completedSet, int faceDown, int emptyColumn, int runLink) {
+        this.completedSet = completedSet;
+        this.faceDown = faceDown;
+        this.emptyColumn = emptyColumn;
+        this.runLink = runLink;
+    }
+
+    /**
+     * @param weights 按FEATURES顺序排列的权重
+     * @return 使用这些权重的评估函数
+     */
+    public static WeightedEvaluator of(int[] weights) {
+        if (weights.length != FEATURES.length) {
+            throw new IllegalArgumentException("权重个数应为" + FEATURES.length + ": " + weights.length);
+        }
+        return new WeightedEvaluator(weights[0], weights[1], weights[2], weights[3]);
+    }
+
+    /**
+     * @return 按FEATURES顺序排列的权重副本
+     */
+    public int[] weights() {
+        return new int[]{completedSet, faceDown, emptyColumn, runLink};
+    }
+
+    @Override
+    public int evaluate(Board board, int completedSets, int remainingDeals) {
+        int score = completedSets * completedSet;
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            if (board.isEmpty(col)) {
+                score += emptyColumn;
+            } else {
+                score += (board.movableRun(col) - 1) * runLink + board.faceDownCount(col) * faceDown;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 从权重文件读取评估函数，文件中没有的特征使用默认权重
+     * @param file 权重文件（properties格式，UTF-8编码）
+     * @return 评估函数
+     * @throws IOException 读取失败或权重不是整数时抛出
+     */
+    public static WeightedEvaluator load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        int[] weights = DEFAULT.weights();
+        for (int i = 0; i < FEATURES.length; i++) {
+            String value = properties.getProperty(FEATURES[i]);
+            if (value == null) continue;
+            try {
+                weights[i] = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("权重文件" + file + "中" + FEATURES[i] + "的值不是整数: " + value, e);
+            }
+        }
+        return of(weights);
+    }
+
+    /**
+     * 读取启动时使用的评估函数：系统属性spider.evaluator指定的文件，未指定时为DEFAULT_FILE
+     * 文件不存在时使用默认权重；文件损坏时打印错误并使用默认权重
+     * @return 评估函数
+     */
+    public static WeightedEvaluator loadDefault() {
+        Path file = Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+        if (!Files.exists(file)) return DEFAULT;
+        try {
+            return load(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * 把权重写入文件，目录不存在时创建
+     * @param file 权重文件
+     * @param comment 写在文件开头的注释，可以为null
+     * @throws IOException 写入失败时抛出
+     */
+    public void save(Path file, String comment) throws IOException {
+        Properties properties = new Properties();
+        int[] weights = weights();
+        for (int i = 0; i < FEATURES.length; i++) {
+            properties.setProperty(FEATURES[i], String.valueOf(weights[i]));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, comment);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Files.write(file, out.toByteArray());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WeightedEvaluator)) return false;
+        WeightedEvaluator other = (WeightedEvaluator) o;
+        return completedSet == other.completedSet && faceDown == other.faceDown
+                && emptyColumn == other.emptyColumn && runLink == other.runLink;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((completedSet * 31 + faceDown) * 31 + emptyColumn) * 31 + runLink;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedEvaluator{completedSet=" + completedSet + ", faceDown=" + faceDown
+                + ", emptyColumn=" + emptyColumn + ", runLink=" + runLink + "}";
+    }
+}
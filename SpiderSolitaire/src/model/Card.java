@@ -1,20 +1,21 @@
 package model;
 
 import java.awt.Color;
-import java.io.Serializable;
 
 /**
  * 扑克牌类
- * 表示一张扑克牌，包含花色、点数和朝面状态等属性
- * 支持获取牌面信息、翻牌等基本操作
+ * 表示一张扑克牌，包含花色和点数，是不可变对象
+ * 
+ * 每种（花色，点数）组合只有一个实例，通过Card.of()获取：
+ * 同一个JVM中的所有牌局共享这52个对象，发牌、复制牌局都不会创建新的Card
+ * 牌是否正面朝上不是牌本身的属性，而是由所在的牌列决定（见game.Board）
  * 
  * 这个类封装了扑克牌的所有基本属性和行为：
  * - 花色（spades黑桃、hearts红桃、clubs梅花、diamonds方块）
  * - 点数（1-13分别表示A、2-10、J、Q、K）
- * - 朝面状态（正面朝上或背面朝上）
  * - 各种显示和查询方法
  */
-public class Card implements Serializable {
+public final class Card {
     /**
      * 花色枚举
      * 表示扑克牌的四种花色：黑桃、红桃、梅花和方块
@@ -29,15 +30,28 @@ public class Card implements Serializable {
     public enum Suit { SPADES, HEARTS, CLUBS, DIAMONDS }
     //enum枚举在Java中是一种特殊的类，它继承自 java.lang.Enum ，
 
+    /**
+     * 全部52张牌的唯一实例，下标为 花色序号 * 13 + 点数 - 1
+     */
+    private static final Card[] CANONICAL = new Card[4 * 13];
+
+    static {
+        for (Suit suit : Suit.values()) {
+            for (int rank = 1; rank <= 13; rank++) {
+                CANONICAL[suit.ordinal() * 13 + rank - 1] = new Card(suit, rank);
+            }
+        }
+    }
+
     /**
      * 牌的花色
      * 
      * 这是一个私有字段，通过getSuit()方法访问
-     * 使用private访问修饰符确保外部不能直接修改花色，保持封装性
+     * 使用private final修饰确保花色创建后不能修改，所有牌局才能安全地共享同一个实例
      * 
      * @see #getSuit()
      */
-    private Suit suit;
+    private final Suit suit;
     
     /**
      * 牌的点数，1-13分别表示A-K
@@ -48,44 +62,35 @@ public class Card implements Serializable {
      * @see #getRank()
      * @see #getRankSymbol()
      */
-    private int rank;
-    
+    private final int rank;
+
     /**
-     * 牌是否正面朝上
-     * 
-     * true表示正面朝上可见（显示点数和花色），false表示背面朝上不可见（显示背面图案）
-     * 这个字段控制着牌的显示状态和游戏逻辑
-     * 初始状态为false（新创建的牌默认是背面朝上的）
-     * 
-     * @see #isFaceUp()
-     * @see #flip()
+     * 构造函数，只在初始化CANONICAL时调用
      */
-    private boolean faceUp;
+    private Card(Suit suit, int rank) {
+        this.suit = suit;    // 设置花色
+        this.rank = rank;    // 设置点数
+    }
 
     /**
-     * 构造函数
-     * 创建一张新的扑克牌，默认为背面朝上
+     * 获取指定花色和点数的牌
      * 
-     * 这是Card类的唯一构造函数，需要指定花色和点数来创建牌
-     * 新创建的牌默认为背面朝上状态（faceUp = false）
+     * 总是返回同一个共享实例，可以直接用==比较两张牌是否相同
      * 
      * @param suit 牌的花色，必须是Suit枚举中的值之一（SPADES, HEARTS, CLUBS, DIAMONDS）
      * @param rank 牌的点数，范围1-13：
      *        1=A（Ace），2-10=数字牌，11=J（Jack），12=Q（Queen），13=K（King）
+     * @return 对应的牌
      * 
      * @throws IllegalArgumentException 如果rank不在1-13范围内时
      * @see Suit
      */
-    public Card(Suit suit, int rank) {
+    public static Card of(Suit suit, int rank) {
         // 验证参数有效性
         if (rank < 1 || rank > 13) {
             throw new IllegalArgumentException("牌的点数必须在1-13范围内，传入的值是: " + rank);
         }
-        
-        // 初始化牌的属性
-        this.suit = suit;    // 设置花色
-        this.rank = rank;    // 设置点数
-        this.faceUp = false; // 默认为背面朝上
+        return CANONICAL[suit.ordinal() * 13 + rank - 1];
     }
 
     /**
@@ -107,28 +112,6 @@ public class Card implements Serializable {
      */
     public int getRank() { return rank; }
     
-    /**
-     * 判断牌是否正面朝上
-     * @return true表示正面朝上，false表示背面朝上
-     */
-    public boolean isFaceUp() { return faceUp; }
-    
-    /**
-     * 翻转牌的状态
-     * 
-     * 这是牌的朝面状态修改器方法（setter），用于切换牌的显示状态
-     * 如果牌当前是正面朝上，翻转后会变成背面朝上，反之亦然
-     * 这个操作是瞬时的，一次调用就能完成翻转
-     * 
-     * 在蜘蛛纸牌游戏中，这个方法通常在以下情况调用：
-     * - 发牌时将牌翻转为正面朝上
-     * - 移动牌后自动翻开下一张牌
-     * - 撤销操作时恢复牌的原始状态
-     * 
-     * @see #isFaceUp()
-     */
-    public void flip() { faceUp = !faceUp; }
-    
     /**
      * 获取牌的点数符号
      * 将数字1-13转换为标准的扑克牌点数符号：A, J, Q, K
@@ -194,23 +177,20 @@ public class Card implements Serializable {
      * 这是Object类的toString()方法的重写，用于提供对象的字符串表示
      * 当需要将Card对象转换为字符串时（如打印、调试、显示等），会自动调用此方法
      * 
-     * 返回格式：
-     * - 如果牌正面朝上（faceUp为true）：返回"点数符号-花色"的格式，如"A-SPADES"、"10-HEARTS"
-     * - 如果牌背面朝上（faceUp为false）：返回"XX"，表示未知牌面
+     * 返回格式："点数符号-花色"，如"A-SPADES"、"10-HEARTS"
+     * 牌面是否可见由牌列决定，需要隐藏暗牌时由调用方处理
      * 
      * @return 牌的字符串表示，用于显示和调试
      * 
      * @see Object#toString()
-     * @see #isFaceUp()
      * @see #getRankSymbol()
      * @see #getSuit()
      */
     @Override
     public String toString() {
-        return (faceUp ? getRankSymbol() + "-" + suit : "XX");
+        return getRankSymbol() + "-" + suit;
     }
-    /** 如果牌正面朝上（ faceUp 为 true），返回格式如 "A-SPADES" 的字符串
-     *如果牌背面朝上（ faceUp 为 false），返回 "XX" （表示未知牌面）
+    /**
      *toString() 是一个特殊的方法，当需要将对象转换为字符串表示时会自动调用
      *在以下情况会自动调用 toString() ：
      *打印对象时： System.out.println(card);
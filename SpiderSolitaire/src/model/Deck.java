@@ -1,26 +1,55 @@
 package model;
 
 import java.util.*;//直接导入整个包
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 牌堆类
  * 表示蜘蛛纸牌的牌堆，包含104张牌（8副牌的组合）
  * 根据游戏难度（单花色、双花色、四花色）生成不同的牌堆
+ *
+ * 洗牌由64位牌局编号决定：相同的编号和难度总是得到相同的牌局，
+ * 可以用来重现、分享牌局，或者作为基准测试和回归测试的固定输入
+ * 洗牌使用以牌局编号为种子的SplitMix64，每个编号独立生成，不依赖其他牌局，
+ * 一段编号范围内的牌局可以在多个线程中并行生成
  */
 public class Deck {
+    /**
+     * SplitMix64的步长
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     /**
      * 牌的栈
      * 使用栈结构存储牌堆中的牌，栈顶是下一张要发的牌
+     * 栈中存放的是Card.of()返回的共享实例，同一种牌在栈中出现多次时是同一个对象
      */
     private Stack<Card> cards = new Stack<>();
 
+    /**
+     * 牌局编号，决定洗牌结果
+     */
+    private final long dealNumber;
+
     /**
      * 构造函数
-     * 根据游戏难度创建牌堆
-     * 蜘蛛纸牌使用8副牌（104张牌）
+     * 根据游戏难度创建牌堆，随机选择一个牌局编号
      * @param difficulty 游戏难度：1=单花色，2=双花色，4=四花色
      */
     public Deck(int difficulty) {
+        this(difficulty, randomDealNumber());
+    }
+
+    /**
+     * 构造函数
+     * 根据游戏难度和牌局编号创建牌堆
+     * 蜘蛛纸牌使用8副牌（104张牌）
+     * @param difficulty 游戏难度：1=单花色，2=双花色，4=四花色
+     * @param dealNumber 牌局编号，相同的编号和难度总是得到相同的牌局
+     */
+    public Deck(int difficulty, long dealNumber) {
+        this.dealNumber = dealNumber;
+
         // 创建花色列表，根据难度添加不同数量的花色
         List<Card.Suit> suits = new ArrayList<>();
 
@@ -40,18 +69,52 @@ public class Deck {
             suits.add(Card.Suit.DIAMONDS);
         }
 
-        // 生成8副牌（104张牌）
-        for (int i = 0; i < 8; i++) {
+        // 生成104张牌：每种花色的A-K共8组，按花色数平分
+        // 单花色8组黑桃，双花色各4组，四花色各2组
+        int setsPerSuit = 8 / suits.size();
+        for (int i = 0; i < setsPerSuit; i++) {
             // 为每种花色生成13张牌（A-K）
             for (Card.Suit suit : suits) {
                 for (int rank = 1; rank <= 13; rank++) {
-                    cards.push(new Card(suit, rank));
+                    cards.push(Card.of(suit, rank));
                 }
             }
         }
         
-        // 洗牌，随机打乱牌堆顺序
-        Collections.shuffle(cards);
+        // 洗牌，按牌局编号打乱牌堆顺序（Fisher-Yates）
+        long seed = dealNumber;
+        for (int i = cards.size() - 1; i > 0; i--) {
+            seed += GOLDEN_GAMMA;
+            // 取随机数的高32位乘以范围再右移，得到[0, i]之间的下标
+            int j = (int) (((mix(seed) >>> 32) * (i + 1)) >>> 32);
+            Collections.swap(cards, i, j);
+        }
+    }
+
+    /**
+     * SplitMix64的输出函数：把内部状态混合成一个64位随机数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 随机选择一个牌局编号
+     * 编号取较小的正整数，便于玩家记录和分享
+     * @return 牌局编号
+     */
+    public static long randomDealNumber() {
+        return ThreadLocalRandom.current().nextLong(1, 1L << 31);
+    }
+
+    /**
+     * 获取牌局编号
+     * @return 牌局编号
+     */
+    public long getDealNumber() {
+        return dealNumber;
     }
 
     /**
@@ -0,0 +1,86 @@
+package sim;
+
+import game.Board;
+import game.Evaluator;
+import game.GameState;
+import game.MoveGenerator;
+import game.SpiderGame;
+import java.util.SplittableRandom;
+
+/**
+ * 评估函数策略：向前看一步，选择走完之后评估分数最高的移动
+ *
+ * 每个候选移动在私有的牌面副本上执行（移动、翻开暗牌、移除完整牌组），再用评估函数打分，
+ * 不经过SpiderGame，不影响撤销记录和计分，也不分配对象
+ * 只接受让评分严格提高的移动，因此不会来回搬动；没有这样的移动时发牌，不能发牌时认输。
+ * 分数相同时随机选择
+ *
+ * 用于比较和调整评估函数的权重（见EvaluatorTuner），只能由一个线程使用
+ */
+public class EvaluatorPolicy implements MovePolicy {
+    private final Evaluator evaluator;
+    private final Board scratch = new Board();
+    private SplittableRandom random = new SplittableRandom();
+
+    /**
+     * @param evaluator 评估函数
+     */
+    public EvaluatorPolicy(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public void newGame(SpiderGame game) {
+        random = new SplittableRandom(game.getState().dealNumber);
+    }
+
+    @Override
+    public int choose(SpiderGame game, int[] moves, int count) {
+        GameState state = game.getState();
+        int current = evaluator.evaluate(state);
+        int best = MovePolicy.STOP;
+        int bestScore = current;
+        int ties = 0;
+        boolean canDeal = false;
+
+        for (int i = 0; i < count; i++) {
+            int m = moves[i];
+            if (m == MoveGenerator.DEAL) {
+                canDeal = true;
+                continue;
+            }
+            int score = score(state, m);
+            if (score <= current || score < bestScore) continue;
+            if (score > bestScore) {
+                bestScore = score;
+                best = m;
+                ties = 1;
+            } else if (random.nextInt(++ties) == 0) {
+                // 蓄水池抽样：在同分的移动中等概率选择
+                best = m;
+            }
+        }
+
+        if (best == MovePolicy.STOP && canDeal) return MoveGenerator.DEAL;
+        return best;
+    }
+
+    /**
+     * 在牌面副本上执行移动，返回走完之后的评分
+     */
+    private int score(GameState state, int move) {
+        scratch.copyFrom(state.board);
+        int from = MoveGenerator.from(move);
+        int to = MoveGenerator.to(move);
+        scratch.moveCards(from, to, MoveGenerator.count(move));
+        scratch.revealTop(from);
+
+        int completedSets = state.completedSets;
+        if (scratch.hasCompleteRun(to)) {
+            scratch.removeRun(to);
+            scratch.revealTop(to);
+            completedSets++;
+        }
+        return evaluator.evaluate(scratch, completedSets, state.remainingDeals);
+    }
+}
@@ -0,0 +1,137 @@
+package sim;
+
+import game.WeightedEvaluator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 评估函数权重的离线调整工具
+ *
+ * 用(1+1)进化策略调整WeightedEvaluator的权重：
+ * - 每一代在当前最好的权重上加一个随机扰动，用EvaluatorPolicy在同一批带编号的牌局上对局，
+ *   所有候选权重使用相同的牌局，比较的差异只来自权重本身
+ * - 按胜局数、其次按总得分比较（得分包含完成牌组的加分和每步的扣分），不差于当前最好的候选被接受
+ * - 扰动步长按1/5成功规则调整：接受时放大，拒绝时缩小
+ * - 评估只用于比较局面，整体缩放权重不改变策略，因此completedSet的权重固定作为尺度，只调整其余权重
+ *
+ * 对局由Simulator分配到多个线程并行执行；结束后在另一批没有参与调整的牌局上对比初始权重和调整后的权重，
+ * 并把调整后的权重写入权重文件，提示引擎下次启动时读取
+ *
+ * 运行方式：java sim.EvaluatorTuner [难度] [每代局数] [代数] [线程数] [输出文件] [随机种子]
+ * 输出文件默认为WeightedEvaluator.loadDefault()读取的文件，初始权重也从这个文件读取
+ */
+public class EvaluatorTuner {
+    /**
+     * 参与调整的第一个牌局编号，验证使用紧接其后的同样数量的牌局
+     */
+    private static final long FIRST_DEAL = 1;
+
+    private final int difficulty;
+    private final long games;
+    private final int threads;
+    private final SplittableRandom random;
+
+    /**
+     * 构造函数
+     * @param difficulty 游戏难度
+     * @param games 每个候选权重对局的局数
+     * @param threads 模拟线程数
+     * @param seed 扰动使用的随机数种子
+     */
+    public EvaluatorTuner(int difficulty, long games, int threads, long seed) {
+        this.difficulty = difficulty;
+        this.games = games;
+        this.threads = threads;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * 在指定的牌局上测试一组权重
+     * @param evaluator 要测试的评估函数
+     * @param firstDeal 第一局的牌局编号
+     * @return 模拟统计结果
+     */
+    public SimulationReport measure(WeightedEvaluator evaluator, long firstDeal) {
+        Simulator simulator = new Simulator(() -> new EvaluatorPolicy(evaluator), threads, Simulator.DEFAULT_MAX_MOVES);
+        return simulator.run(difficulty, firstDeal, games);
+    }
+
+    /**
+     * @return a是否不差于b：胜局数多的更好，胜局数相同时总得分高的更好
+     */
+    private static boolean atLeast(SimulationReport a, SimulationReport b) {
+        if (a.wins != b.wins) return a.wins > b.wins;
+        return a.totalScore >= b.totalScore;
+    }
+
+    /**
+     * 从初始权重开始调整
+     * @param initial 初始权重
+     * @param generations 代数
+     * @return 调整后的权重
+     */
+    public WeightedEvaluator tune(WeightedEvaluator initial, int generations) {
+        WeightedEvaluator best = initial;
+        SimulationReport bestReport = measure(best, FIRST_DEAL);
+        System.out.printf("初始 %s: %s%n", best, bestReport);
+
+        int[] weights = best.weights();
+        double[] steps = new double[weights.length];
+        for (int i = 1; i < weights.length; i++) steps[i] = Math.max(2, Math.abs(weights[i]) / 2.0);
+
+        for (int g = 1; g <= generations; g++) {
+            int[] candidate = best.weights();
+            for (int i = 1; i < candidate.length; i++) {
+                candidate[i] += (int) Math.round(gaussian() * steps[i]);
+            }
+            if (Arrays.equals(candidate, best.weights())) continue;
+
+            WeightedEvaluator evaluator = WeightedEvaluator.of(candidate);
+            SimulationReport report = measure(evaluator, FIRST_DEAL);
+            boolean accepted = atLeast(report, bestReport);
+            if (accepted) {
+                best = evaluator;
+                bestReport = report;
+            }
+            for (int i = 1; i < steps.length; i++) {
+                steps[i] = Math.max(1, steps[i] * (accepted ? 1.5 : 0.9));
+            }
+            System.out.printf("第%d代 %s %s: %s%n", g, accepted ? "接受" : "拒绝", evaluator, report);
+        }
+        return best;
+    }
+
+    /**
+     * @return 标准正态分布的随机数（Box-Muller变换）
+     */
+    private double gaussian() {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    public static void main(String[] args) throws IOException {
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 2_000;
+        int generations = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Path output = Paths.get(args.length > 4 ? args[4]
+                : System.getProperty(WeightedEvaluator.FILE_PROPERTY, WeightedEvaluator.DEFAULT_FILE));
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        System.out.printf("难度 %d, 每代 %,d 局, %d 代, 线程数 %d%n", difficulty, games, generations, threads);
+        EvaluatorTuner tuner = new EvaluatorTuner(difficulty, games, threads, seed);
+        WeightedEvaluator initial = WeightedEvaluator.loadDefault();
+        WeightedEvaluator tuned = tuner.tune(initial, generations);
+
+        // 在没有参与调整的牌局上验证，避免只是适应了调整用的那一批牌局
+        long validation = FIRST_DEAL + games;
+        System.out.printf("验证 初始: %s%n", tuner.measure(initial, validation));
+        System.out.printf("验证 调整后: %s%n", tuner.measure(tuned, validation));
+
+        tuned.save(output, "difficulty=" + difficulty + ", games=" + games + ", generations=" + generations);
+        System.out.println("已写入 " + output.toAbsolutePath() + ": " + tuned);
+    }
+}
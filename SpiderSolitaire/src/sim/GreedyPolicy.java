@@ -0,0 +1,90 @@
+package sim;
+
+import game.Board;
+import game.MoveGenerator;
+import game.SpiderGame;
+import java.util.SplittableRandom;
+
+/**
+ * 贪心策略：只看一步，选择评分最高的操作
+ *
+ * 评分规则：
+ * - 翻开一张暗牌：+10
+ * - 清空一列（移到非空列上）：+5
+ * - 新增一个同花色连接，且没有拆开原有的同花色连接：+4
+ * - 新增一个不同花色的连接，且原来没有接在任何牌上：+1
+ *
+ * 评分为正的移动都会让“已翻开的牌数 + 连接数”严格增加，因此不会来回搬动；
+ * 没有正分的移动时发牌，不能发牌时认输。分数相同时随机选择
+ */
+public class GreedyPolicy implements MovePolicy {
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public void newGame(SpiderGame game) {
+        random = new SplittableRandom(game.getState().dealNumber);
+    }
+
+    @Override
+    public int choose(SpiderGame game, int[] moves, int count) {
+        Board board = game.getState().board;
+        int best = MovePolicy.STOP;
+        int bestScore = 0;
+        int ties = 0;
+        boolean canDeal = false;
+
+        for (int i = 0; i < count; i++) {
+            int m = moves[i];
+            if (m == MoveGenerator.DEAL) {
+                canDeal = true;
+                continue;
+            }
+            int score = score(board, m);
+            if (score <= 0 || score < bestScore) continue;
+            if (score > bestScore) {
+                bestScore = score;
+                best = m;
+                ties = 1;
+            } else if (random.nextInt(++ties) == 0) {
+                // 蓄水池抽样：在同分的移动中等概率选择
+                best = m;
+            }
+        }
+
+        if (best == MovePolicy.STOP && canDeal) return MoveGenerator.DEAL;
+        return best;
+    }
+
+    /**
+     * 计算一个移动的评分
+     */
+    static int score(Board board, int move) {
+        int from = MoveGenerator.from(move);
+        int to = MoveGenerator.to(move);
+        int base = board.size(from) - MoveGenerator.count(move); // 移动牌组最底部的牌
+        byte baseCard = board.get(from, base);
+
+        int score = 0;
+        boolean wasLinked = false;
+        boolean wasSameSuit = false;
+        if (base == 0) {
+            if (!board.isEmpty(to)) score += 5;
+        } else if (!board.isFaceUp(from, base - 1)) {
+            score += 10;
+        } else {
+            byte below = board.get(from, base - 1);
+            wasLinked = Board.rank(below) == Board.rank(baseCard) + 1;
+            wasSameSuit = wasLinked && Board.suit(below) == Board.suit(baseCard);
+        }
+
+        if (!board.isEmpty(to)) {
+            boolean sameSuit = Board.suit(board.top(to)) == Board.suit(baseCard);
+            if (sameSuit && !wasSameSuit) {
+                score += 4;
+            } else if (!wasLinked) {
+                score += 1;
+            }
+        }
+        return score;
+    }
+}
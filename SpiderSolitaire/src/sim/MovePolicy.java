@@ -0,0 +1,33 @@
+package sim;
+
+import game.SpiderGame;
+
+/**
+ * 走法策略
+ *
+ * 模拟器每一步先用MoveGenerator生成所有合法操作，再交给策略从中选择一个
+ * 策略实例只会被一个线程使用，可以在内部保存随机数生成器、缓冲区等状态，
+ * 多线程模拟时每个线程通过工厂创建自己的实例
+ */
+public interface MovePolicy {
+    /**
+     * 认输：策略认为没有值得走的操作，结束本局
+     */
+    int STOP = -2;
+
+    /**
+     * 开始新的一局前调用
+     * @param game 新的一局
+     */
+    default void newGame(SpiderGame game) {
+    }
+
+    /**
+     * 选择下一步操作
+     * @param game 当前游戏
+     * @param moves 所有合法操作的编码（见MoveGenerator）
+     * @param count 合法操作的数量，至少为1
+     * @return 选中的操作编码，或STOP表示结束本局
+     */
+    int choose(SpiderGame game, int[] moves, int count);
+}
@@ -0,0 +1,23 @@
+package sim;
+
+import game.SpiderGame;
+import java.util.SplittableRandom;
+
+/**
+ * 随机策略：在所有合法操作中等概率选择一个
+ *
+ * 每局的随机数种子由牌局编号决定，相同的牌局总是走出相同的结果
+ */
+public class RandomPolicy implements MovePolicy {
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public void newGame(SpiderGame game) {
+        random = new SplittableRandom(game.getState().dealNumber);
+    }
+
+    @Override
+    public int choose(SpiderGame game, int[] moves, int count) {
+        return moves[random.nextInt(count)];
+    }
+}
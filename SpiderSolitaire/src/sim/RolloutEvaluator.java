@@ -0,0 +1,261 @@
+package sim;
+
+import game.Board;
+import game.Budget;
+import game.Determinizer;
+import game.GameState;
+import game.MoveGenerator;
+import game.SpiderGame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 蒙特卡洛推演评估器
+ *
+ * 四花色牌局往往无法在短时间内精确求解，推演评估器用大量随机对局估计每个候选操作的胜率：
+ * - 每次推演先用Determinizer把暗牌和牌堆重新随机分配，得到一个与玩家所见一致的局面，
+ *   再执行候选操作，然后按推演策略（默认为GreedyPolicy）下完这一局
+ * - 推演分配到线程池中的多个线程，每个线程有自己的随机数生成器、抽样器、策略和游戏副本，
+ *   线程之间只在结束时汇总计数，不共享任何可变状态
+ * - 各线程轮流推演所有候选操作，每个操作的推演次数大致相同
+ *
+ * 贪心推演在双花色和四花色牌局中几乎不会获胜，胜率相同时按平均完成牌组数、平均剩余暗牌数比较，
+ * 结果中的排序已经考虑了这些次要指标
+ *
+ * 评估器持有一个线程池，不再使用时应调用shutdown()
+ *
+ * 运行方式：java sim.RolloutEvaluator [难度] [牌局编号] [毫秒] [线程数]
+ */
+public class RolloutEvaluator {
+    /**
+     * 每次推演最多执行的操作数
+     */
+    public static final int DEFAULT_MAX_MOVES = 300;
+
+    /**
+     * 一个候选操作的推演统计，按胜率、平均完成牌组数、平均剩余暗牌数从好到差排序
+     */
+    public static final class Estimate implements Comparable<Estimate> {
+        /**
+         * 候选操作的编码（见MoveGenerator）
+         */
+        public final int move;
+        public final long playouts;
+        public final long wins;
+        /**
+         * 所有推演结束时完成牌组数之和
+         */
+        public final long completedSets;
+        /**
+         * 所有推演结束时剩余暗牌数之和
+         */
+        public final long faceDown;
+
+        Estimate(int move, long playouts, long wins, long completedSets, long faceDown) {
+            this.move = move;
+            this.playouts = playouts;
+            this.wins = wins;
+            this.completedSets = completedSets;
+            this.faceDown = faceDown;
+        }
+
+        /**
+         * @return 估计的胜率，没有推演时为0
+         */
+        public double winRate() {
+            return playouts == 0 ? 0 : (double) wins / playouts;
+        }
+
+        /**
+         * @return 推演结束时的平均完成牌组数
+         */
+        public double meanSets() {
+            return playouts == 0 ? 0 : (double) completedSets / playouts;
+        }
+
+        /**
+         * @return 推演结束时的平均剩余暗牌数
+         */
+        public double meanFaceDown() {
+            return playouts == 0 ? 0 : (double) faceDown / playouts;
+        }
+
+        @Override
+        public int compareTo(Estimate o) {
+            int c = Double.compare(o.winRate(), winRate());
+            if (c == 0) c = Double.compare(o.meanSets(), meanSets());
+            if (c == 0) c = Double.compare(meanFaceDown(), o.meanFaceDown());
+            return c;
+        }
+
+        @Override
+        public String toString() {
+            String name = move == MoveGenerator.DEAL ? "发牌" : String.format("%d->%d x%d",
+                    MoveGenerator.from(move) + 1, MoveGenerator.to(move) + 1, MoveGenerator.count(move));
+            return String.format("%-10s 推演 %,7d 次, 胜率 %6.2f%%, 平均完成 %.2f 组, 平均暗牌 %.1f 张",
+                    name, playouts, winRate() * 100, meanSets(), meanFaceDown());
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int threads;
+    private final Supplier<MovePolicy> policies;
+    private final Simulator simulator;
+
+    /**
+     * 构造函数，使用贪心推演策略
+     * @param threads 推演线程数
+     */
+    public RolloutEvaluator(int threads) {
+        this(threads, GreedyPolicy::new, DEFAULT_MAX_MOVES);
+    }
+
+    /**
+     * 构造函数
+     * @param threads 推演线程数
+     * @param policies 推演策略工厂，每个线程每次评估调用一次得到自己的策略实例
+     * @param maxMoves 每次推演最多执行的操作数
+     */
+    public RolloutEvaluator(int threads, Supplier<MovePolicy> policies, int maxMoves) {
+        AtomicInteger index = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "rollout-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.threads = threads;
+        this.policies = policies;
+        this.simulator = new Simulator(policies, 1, maxMoves);
+    }
+
+    /**
+     * 评估当前局面的所有合法操作
+     * 预算中的时间上限和取消条件对所有线程生效，节点上限表示所有线程合计的最多推演次数；
+     * 预算必须至少限制其中一项，否则评估不会结束
+     * @param state 要评估的游戏状态，不会被修改
+     * @param budget 评估预算
+     * @param seed 随机数种子，每个线程的生成器由它派生
+     * @return 每个合法操作的推演统计，从好到差排序；没有合法操作时为空
+     */
+    public List<Estimate> evaluate(GameState state, Budget budget, long seed) {
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int n = MoveGenerator.generate(state, buffer);
+        if (n == 0) return new ArrayList<>();
+        int[] moves = Arrays.copyOf(buffer, n);
+
+        // 各线程在推演过程中反复从根状态抽样，先复制一份，调用方随后修改原状态不会影响评估
+        GameState root = new GameState(state.difficulty, state.dealNumber, state.board);
+        root.score = state.score;
+        root.completedSets = state.completedSets;
+        root.remainingDeals = state.remainingDeals;
+
+        long deadline = System.nanoTime() + budget.timeLimitNanos();
+        long quota = budget.maxNodes() == Long.MAX_VALUE ? Long.MAX_VALUE
+                : (budget.maxNodes() + threads - 1) / threads;
+        SplittableRandom master = new SplittableRandom(seed);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = master.split();
+            int first = t;
+            futures.add(pool.submit(() -> runWorker(root, moves, first, random, deadline, quota, budget)));
+        }
+
+        long[] total = new long[n * 4];
+        try {
+            for (Future<long[]> future : futures) {
+                long[] part = future.get();
+                for (int i = 0; i < total.length; i++) total[i] += part[i];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("推演被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("推演线程出错", e.getCause());
+        }
+
+        List<Estimate> estimates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            estimates.add(new Estimate(moves[i], total[i * 4], total[i * 4 + 1], total[i * 4 + 2], total[i * 4 + 3]));
+        }
+        estimates.sort(null);
+        return estimates;
+    }
+
+    /**
+     * 单个线程的推演循环
+     * @param first 本线程推演的第一个候选操作，之后依次轮换
+     * @return 每个候选操作的 {推演次数, 胜局数, 完成牌组数之和, 剩余暗牌数之和}
+     */
+    private long[] runWorker(GameState root, int[] moves, int first, SplittableRandom random,
+                             long deadline, long quota, Budget budget) {
+        MovePolicy policy = policies.get();
+        Determinizer determinizer = new Determinizer();
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        long[] stats = new long[moves.length * 4];
+
+        int index = first % moves.length;
+        for (long played = 0; played < quota; played++) {
+            if (System.nanoTime() - deadline > 0) break;
+            if (budget.cancelled() != null && budget.cancelled().getAsBoolean()) break;
+
+            // 抽样得到的牌局编号是随机数，推演策略按牌局编号设置的随机种子也随之不同
+            GameState sample = determinizer.sample(root, random);
+            SpiderGame game = new SpiderGame(sample, false);
+            int m = moves[index];
+            if (m == MoveGenerator.DEAL) {
+                game.deal();
+            } else {
+                game.move(MoveGenerator.from(m), MoveGenerator.to(m), MoveGenerator.count(m));
+            }
+            game.checkAndRemoveCompleteSets();
+            simulator.play(game, policy, buffer);
+
+            int faceDown = 0;
+            for (int col = 0; col < Board.COLUMNS; col++) {
+                faceDown += sample.board.faceDownCount(col);
+            }
+            stats[index * 4]++;
+            if (game.isGameWon()) stats[index * 4 + 1]++;
+            stats[index * 4 + 2] += sample.completedSets;
+            stats[index * 4 + 3] += faceDown;
+
+            if (++index == moves.length) index = 0;
+        }
+        return stats;
+    }
+
+    /**
+     * 关闭线程池
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) {
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long deal = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        RolloutEvaluator evaluator = new RolloutEvaluator(threads);
+        GameState state = new GameState(difficulty, deal);
+        long start = System.nanoTime();
+        List<Estimate> estimates = evaluator.evaluate(state, Budget.millis(millis), deal);
+        long elapsed = System.nanoTime() - start;
+        evaluator.shutdown();
+
+        long playouts = 0;
+        for (Estimate e : estimates) playouts += e.playouts;
+        System.out.printf("难度 %d, 牌局 %d, 线程数 %d, 推演 %,d 次, 耗时 %.2f 秒 (%,.0f 次/秒)%n",
+                difficulty, deal, threads, playouts, elapsed / 1e9, playouts / (elapsed / 1e9));
+        for (Estimate e : estimates) System.out.println(e);
+    }
+}
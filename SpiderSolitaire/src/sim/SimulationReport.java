@@ -0,0 +1,62 @@
+package sim;
+
+/**
+ * 一组模拟对局的统计结果
+ */
+public class SimulationReport {
+    public final int difficulty;
+    public final long games;
+    public final long wins;
+    /**
+     * 所有对局的操作总数（移动和发牌）
+     */
+    public final long totalMoves;
+    public final long totalScore;
+    /**
+     * 模拟耗时（纳秒）
+     */
+    public final long elapsedNanos;
+
+    public SimulationReport(int difficulty, long games, long wins, long totalMoves, long totalScore, long elapsedNanos) {
+        this.difficulty = difficulty;
+        this.games = games;
+        this.wins = wins;
+        this.totalMoves = totalMoves;
+        this.totalScore = totalScore;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 每秒完成的对局数
+     */
+    public double gamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return 胜率
+     */
+    public double winRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return 平均每局的操作数
+     */
+    public double averageMoves() {
+        return games == 0 ? 0 : (double) totalMoves / games;
+    }
+
+    /**
+     * @return 平均每局的最终得分
+     */
+    public double averageScore() {
+        return games == 0 ? 0 : (double) totalScore / games;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d花色: %,d 局, %,.0f 局/秒, 胜率 %.2f%%, 平均 %.1f 步, 平均得分 %.1f",
+                difficulty, games, gamesPerSecond(), winRate() * 100, averageMoves(), averageScore());
+    }
+}
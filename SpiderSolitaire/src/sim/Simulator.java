@@ -0,0 +1,162 @@
+package sim;
+
+import game.Evaluator;
+import game.GameState;
+import game.MoveGenerator;
+import game.SpiderGame;
+import game.WeightedEvaluator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * 无界面的蜘蛛纸牌模拟器
+ *
+ * 不依赖Swing，直接驱动SpiderGame按照走法策略连续对局：
+ * - 每个线程持有自己的策略实例和移动缓冲区，线程之间不共享任何可变状态
+ * - 牌局编号按线程交错分配，第i个线程负责 firstDeal + i, firstDeal + i + threads, ...
+ *   同一组参数总是模拟同一批牌局，结果可以重现
+ * - 每局在胜利、没有合法操作、策略认输或达到步数上限时结束
+ *
+ * 运行方式：java sim.Simulator [random|greedy|solver|evaluator] [每种难度的局数] [线程数]
+ */
+public class Simulator {
+    /**
+     * 每局最多执行的操作数，防止随机策略来回搬动无法结束
+     */
+    public static final int DEFAULT_MAX_MOVES = 500;
+
+    private final Supplier<MovePolicy> policies;
+    private final int threads;
+    private final int maxMoves;
+
+    /**
+     * 构造函数
+     * @param policies 策略工厂，每个线程调用一次得到自己的策略实例
+     * @param threads 模拟线程数
+     * @param maxMoves 每局最多执行的操作数
+     */
+    public Simulator(Supplier<MovePolicy> policies, int threads, int maxMoves) {
+        this.policies = policies;
+        this.threads = threads;
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * 模拟一批牌局
+     * @param difficulty 游戏难度：1=单花色，2=双花色，4=四花色
+     * @param firstDeal 第一局的牌局编号
+     * @param games 对局数量
+     * @return 统计结果
+     */
+    public SimulationReport run(int difficulty, long firstDeal, long games) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> runWorker(difficulty, firstDeal + offset, games - offset)));
+            }
+
+            long[] total = new long[3];
+            for (Future<long[]> future : futures) {
+                long[] part = future.get();
+                for (int i = 0; i < total.length; i++) total[i] += part[i];
+            }
+            return new SimulationReport(difficulty, games, total[0], total[1], total[2], System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("模拟被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("模拟线程出错", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 单个线程的对局循环
+     * @param firstDeal 本线程的第一局牌局编号
+     * @param remaining 从第一局开始计算的剩余局数，本线程每隔threads局取一局
+     * @return {胜局数, 操作总数, 得分总和}
+     */
+    private long[] runWorker(int difficulty, long firstDeal, long remaining) {
+        MovePolicy policy = policies.get();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long wins = 0;
+        long totalMoves = 0;
+        long totalScore = 0;
+
+        for (long i = 0; i < remaining; i += threads) {
+            // 模拟不需要跳转，不保存时间线检查点
+            SpiderGame game = new SpiderGame(new GameState(difficulty, firstDeal + i), false);
+            totalMoves += play(game, policy, moves);
+            if (game.isGameWon()) wins++;
+            totalScore += game.getState().score;
+        }
+        return new long[]{wins, totalMoves, totalScore};
+    }
+
+    /**
+     * 按策略下完一局
+     * @param game 新的一局
+     * @param policy 走法策略
+     * @param moves 移动缓冲区，长度至少为MoveGenerator.MAX_MOVES
+     * @return 本局执行的操作数
+     */
+    public int play(SpiderGame game, MovePolicy policy, int[] moves) {
+        GameState state = game.getState();
+        policy.newGame(game);
+
+        int played = 0;
+        while (played < maxMoves && !game.isGameWon()) {
+            int n = MoveGenerator.generate(state, moves);
+            if (n == 0) break;
+            int m = policy.choose(game, moves, n);
+            if (m == MovePolicy.STOP) break;
+
+            if (m == MoveGenerator.DEAL) {
+                game.deal();
+            } else {
+                game.move(MoveGenerator.from(m), MoveGenerator.to(m), MoveGenerator.count(m));
+            }
+            game.checkAndRemoveCompleteSets();
+            played++;
+        }
+        return played;
+    }
+
+    /**
+     * 根据名称创建策略工厂
+     * @param name random、greedy、solver或evaluator（使用启动时读取的评估函数权重）
+     */
+    static Supplier<MovePolicy> policy(String name) {
+        switch (name) {
+            case "random": return RandomPolicy::new;
+            case "greedy": return GreedyPolicy::new;
+            case "solver": return () -> new SolverPolicy(20_000, 1_000);
+            case "evaluator": {
+                Evaluator evaluator = WeightedEvaluator.loadDefault();
+                return () -> new EvaluatorPolicy(evaluator);
+            }
+            default: throw new IllegalArgumentException("未知的策略: " + name);
+        }
+    }
+
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0] : "random";
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Simulator simulator = new Simulator(policy(name), threads, DEFAULT_MAX_MOVES);
+        System.out.printf("策略: %s, 线程数: %d, 每局最多 %d 步%n", name, threads, DEFAULT_MAX_MOVES);
+        for (int difficulty : new int[]{1, 2, 4}) {
+            System.out.println(simulator.run(difficulty, 1, games));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package sim;
+
+import game.MoveGenerator;
+import game.Solver;
+import game.SpiderGame;
+
+/**
+ * 求解器策略：每一步都用有限预算的Solver搜索，走它建议的第一步
+ *
+ * 求解器搜索完毕仍没有找到获胜路线，或者没有可用移动时认输
+ * 每个实例持有自己的求解器和置换表，只能由一个线程使用
+ */
+public class SolverPolicy implements MovePolicy {
+    private final Solver solver;
+
+    /**
+     * @param maxNodes 每一步最多展开的节点数
+     * @param timeLimitMillis 每一步最长搜索时间（毫秒）
+     */
+    public SolverPolicy(long maxNodes, long timeLimitMillis) {
+        this.solver = new Solver(maxNodes, timeLimitMillis);
+    }
+
+    @Override
+    public int choose(SpiderGame game, int[] moves, int count) {
+        Solver.Result result = solver.solve(game.getState());
+        if (result.status == Solver.Status.NO_WIN || !result.hasMove()) return MovePolicy.STOP;
+        if (result.isDeal()) return MoveGenerator.DEAL;
+        return MoveGenerator.encode(result.from, result.to, result.count);
+    }
+}
@@ -1,14 +1,16 @@
 package ui;
 
+import game.Board;
 import game.GameState;
 import game.SpiderGame;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
-import java.util.Stack;
+import java.util.function.Consumer;
 import javax.swing.*;
 import model.Card;
 import util.AchievementManager;
+import util.AutosaveJournal;
 import util.SaveManager;
 
 /**
@@ -37,8 +39,27 @@ public class GameFrame extends JFrame {
             // 检查是否存在保存的游戏文件
             GameState loadedState = null;
             boolean hasSavedGame = new java.io.File("save.dat").exists();
+
+            // 上次没有正常退出时，自动保存日志中会留有未保存的对局，优先询问是否恢复
+            GameState recovered = null;
+            try {
+                recovered = AutosaveJournal.recover();
+            } catch (Exception ex) {
+                System.err.println("读取自动保存失败: " + ex.getMessage());
+            }
+            if (recovered != null) {
+                int choice = JOptionPane.showConfirmDialog(null,
+                    "检测到上次未正常退出时的游戏进度！\n\n" +
+                    "是否要恢复这局游戏？",
+                    "恢复游戏",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.QUESTION_MESSAGE);
+                if (choice == JOptionPane.YES_OPTION) {
+                    loadedState = recovered;
+                }
+            }
             
-            if (hasSavedGame) {
+            if (loadedState == null && hasSavedGame) {
                 // 询问用户是否要加载保存的游戏
                 int choice = JOptionPane.showOptionDialog(null, 
                     "检测到保存的游戏记录！\n\n" +
@@ -106,6 +127,17 @@ public class GameFrame extends JFrame {
      * 游戏核心逻辑对象，负责处理游戏规则和状态管理
      */
     private final SpiderGame game;
+
+    /**
+     * 自动保存日志，所有窗口共用，每个窗口创建时跟踪自己的游戏
+     * 无法创建日志文件时为null，游戏照常进行
+     */
+    private static AutosaveJournal autosave;
+
+    /**
+     * 后台提示服务，所有窗口共用一个分析线程和求解器
+     */
+    private static final HintService hints = new HintService();
     
     /**
      * 鼠标位置跟踪，用于拖拽操作
@@ -135,6 +167,7 @@ public class GameFrame extends JFrame {
     public GameFrame(int difficulty) {
         // 创建游戏对象，传递难度参数给SpiderGame类
         game = new SpiderGame(difficulty);
+        startAutosave();
 
         // 根据难度设置窗口标题
         String difficultyName;
@@ -144,7 +177,8 @@ public class GameFrame extends JFrame {
         
         // 设置窗口基本属性
         // setTitle() 设置窗口标题栏显示的文本
-        setTitle("蜘蛛纸牌 - " + difficultyName);
+        // 标题中显示牌局编号，玩家可以凭编号重玩或分享同一局
+        setTitle("蜘蛛纸牌 - " + difficultyName + " - 第" + game.getState().dealNumber + "局");
         // setSize() 设置窗口大小，单位为像素
         setSize(1000, 600);
         // setDefaultCloseOperation() 设置点击关闭按钮时的行为，EXIT_ON_CLOSE表示退出程序
@@ -154,15 +188,17 @@ public class GameFrame extends JFrame {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                // 窗口关闭前自动保存游戏
-                try {
-                    SaveManager.save(game.getState());
-                } catch (IOException ex) {
-                    System.err.println("自动保存失败: " + ex.getMessage());
-                }
-                
-                // 然后退出程序
-                System.exit(0);
+                // 窗口关闭前在后台自动保存游戏，先隐藏窗口，保存完成后再退出程序
+                setVisible(false);
+                saveInBackground(ex -> {
+                    if (ex != null) {
+                        System.err.println("自动保存失败: " + ex.getMessage());
+                    } else if (autosave != null) {
+                        // 已经正常保存，不再需要自动保存日志
+                        autosave.discard();
+                    }
+                    System.exit(0);
+                });
             }
         });
         // setLayout() 设置窗口的布局管理器，BorderLayout将窗口分为五个区域
@@ -175,6 +211,8 @@ public class GameFrame extends JFrame {
         // 创建撤销按钮
         // JButton是Swing中的按钮组件，可以显示文本并响应点击事件
         JButton undoBtn = new JButton("撤销");
+        // 创建重做按钮，重新执行最近一次撤销的操作
+        JButton redoBtn = new JButton("重做");
         // 创建发牌按钮，显示剩余发牌次数
         // 按钮文本显示当前剩余的发牌次数，格式为"发牌(X)"，其中X是剩余次数
         JButton dealBtn = new JButton("发牌(" + game.getState().remainingDeals + ")");
@@ -184,6 +222,8 @@ public class GameFrame extends JFrame {
         undoBtn.addActionListener(e -> {
             // 执行撤销操作，恢复到上一个游戏状态
             game.undo(); 
+            // 局面变化后在后台重新分析提示
+            hints.request(game);
             // 更新发牌按钮的剩余次数显示
             // 撤销操作可能会恢复发牌次数，所以需要更新按钮文本
             dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
@@ -191,6 +231,16 @@ public class GameFrame extends JFrame {
             repaint(); 
         });
         
+        // 重做按钮事件监听器
+        redoBtn.addActionListener(e -> {
+            // 没有可以重做的操作时（没有撤销过，或撤销后又走了新的一步）不做任何事
+            game.redo();
+            hints.request(game);
+            // 重做发牌会减少剩余发牌次数
+            dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
+            repaint();
+        });
+        
         // 发牌按钮事件监听器
         dealBtn.addActionListener(e -> {
             // 调用游戏的发牌方法，传入false表示不是撤销操作
@@ -202,6 +252,7 @@ public class GameFrame extends JFrame {
                 // 成功发牌后更新按钮文本显示剩余次数
                 // 每发一次牌，remainingDeals减1
                 dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
+                hints.request(game);
             }
             // 重绘界面显示更新后的状态
             repaint(); 
@@ -209,8 +260,10 @@ public class GameFrame extends JFrame {
         
         // 创建提示按钮
         // hintBtn按钮用于显示当前游戏的提示信息
+        // 提示在后台线程中提前分析，点击时立即显示目前最好的结果，不会卡住窗口
         JButton hintBtn = new JButton("提示");
-        hintBtn.addActionListener(e -> JOptionPane.showMessageDialog(this, game.hint()));
+        hintBtn.addActionListener(e -> JOptionPane.showMessageDialog(this, hints.current().message()));
+        startHints(hintBtn);
         
         // 创建成就按钮
         // achievementBtn按钮用于打开成就对话框，显示玩家的成就信息
@@ -221,30 +274,31 @@ public class GameFrame extends JFrame {
         // saveBtn按钮用于将当前游戏状态保存到文件
         JButton saveBtn = new JButton("保存游戏");
         saveBtn.addActionListener(e -> {
-            try {
-                // 调用SaveManager的静态方法保存游戏状态到文件
-                // 传入当前游戏状态对象，序列化为二进制格式保存到save.dat文件
-                SaveManager.save(game.getState());
-                // 保存成功后显示确认消息
-                JOptionPane.showMessageDialog(this, "游戏已保存到 save.dat 文件！");
-            } catch (IOException ex) {
-                // 如果保存过程中发生I/O错误，显示错误消息
-                // JOptionPane.ERROR_MESSAGE表示显示错误图标
-                JOptionPane.showMessageDialog(this, "保存失败: " + ex.getMessage(), 
-                    "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            // 在后台线程中把当前游戏状态编码为紧凑的二进制格式保存到save.dat文件
+            // 保存期间禁用按钮，避免重复点击
+            saveBtn.setEnabled(false);
+            saveInBackground(ex -> {
+                saveBtn.setEnabled(true);
+                if (ex == null) {
+                    // 保存成功后显示确认消息
+                    JOptionPane.showMessageDialog(this, "游戏已保存到 save.dat 文件！");
+                } else {
+                    // 如果保存过程中发生I/O错误，显示错误消息
+                    // JOptionPane.ERROR_MESSAGE表示显示错误图标
+                    JOptionPane.showMessageDialog(this, "保存失败: " + ex.getMessage(), 
+                        "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
         
         // 创建新游戏按钮
         // newGameBtn按钮用于开始一个新的游戏，可以重新选择难度
         JButton newGameBtn = new JButton("新游戏");
         newGameBtn.addActionListener(e -> {
-            // 在开始新游戏前，先保存当前游戏
-            try {
-                SaveManager.save(game.getState());
-            } catch (IOException ex) {
-                System.err.println("自动保存失败: " + ex.getMessage());
-            }
+            // 在开始新游戏前，先在后台保存当前游戏
+            saveInBackground(ex -> {
+                if (ex != null) System.err.println("自动保存失败: " + ex.getMessage());
+            });
             
             // 创建新游戏对话框
             // showOptionDialog()显示选项对话框，返回用户选择的选项索引
@@ -281,6 +335,7 @@ public class GameFrame extends JFrame {
         // 将按钮添加到面板中
         // JPanel使用FlowLayout布局管理器，默认从左到右排列组件
         panel.add(undoBtn);      // 添加撤销按钮
+        panel.add(redoBtn);      // 添加重做按钮
         panel.add(dealBtn);      // 添加发牌按钮
         panel.add(hintBtn);      // 添加提示按钮
         panel.add(achievementBtn); // 添加成就按钮
@@ -306,6 +361,7 @@ public class GameFrame extends JFrame {
     public GameFrame(GameState savedState) {
         // 创建游戏对象，传递保存的状态
         game = new SpiderGame(savedState);
+        startAutosave();
 
         // 设置窗口基本属性
         setTitle("蜘蛛纸牌 - 已保存的游戏");
@@ -316,15 +372,17 @@ public class GameFrame extends JFrame {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                // 窗口关闭前自动保存游戏
-                try {
-                    SaveManager.save(game.getState());
-                } catch (IOException ex) {
-                    System.err.println("自动保存失败: " + ex.getMessage());
-                }
-                
-                // 然后退出程序
-                System.exit(0);
+                // 窗口关闭前在后台自动保存游戏，先隐藏窗口，保存完成后再退出程序
+                setVisible(false);
+                saveInBackground(ex -> {
+                    if (ex != null) {
+                        System.err.println("自动保存失败: " + ex.getMessage());
+                    } else if (autosave != null) {
+                        // 已经正常保存，不再需要自动保存日志
+                        autosave.discard();
+                    }
+                    System.exit(0);
+                });
             }
         });
         setLayout(new BorderLayout());
@@ -334,17 +392,28 @@ public class GameFrame extends JFrame {
         
         // 创建撤销按钮
         JButton undoBtn = new JButton("撤销");
+        // 创建重做按钮
+        JButton redoBtn = new JButton("重做");
         // 创建发牌按钮，显示剩余发牌次数
         JButton dealBtn = new JButton("发牌(" + game.getState().remainingDeals + ")");
         
         // 撤销按钮事件监听器
         undoBtn.addActionListener(e -> {
             game.undo(); // 执行撤销操作
+            hints.request(game);
             // 更新发牌按钮的剩余次数显示
             dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
             repaint(); // 重绘界面
         });
         
+        // 重做按钮事件监听器
+        redoBtn.addActionListener(e -> {
+            game.redo(); // 执行重做操作
+            hints.request(game);
+            dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
+            repaint(); // 重绘界面
+        });
+        
         // 发牌按钮事件监听器
         dealBtn.addActionListener(e -> {
             if (!game.deal()) {
@@ -353,13 +422,15 @@ public class GameFrame extends JFrame {
             } else {
                 // 成功发牌后更新按钮文本显示剩余次数
                 dealBtn.setText("发牌(" + game.getState().remainingDeals + ")");
+                hints.request(game);
             }
             repaint(); // 重绘界面显示更新后的状态
         });
         
-        // 创建提示按钮
+        // 创建提示按钮，提示在后台提前分析
         JButton hintBtn = new JButton("提示");
-        hintBtn.addActionListener(e -> JOptionPane.showMessageDialog(this, game.hint()));
+        hintBtn.addActionListener(e -> JOptionPane.showMessageDialog(this, hints.current().message()));
+        startHints(hintBtn);
         
         // 创建成就按钮
         JButton achievementBtn = new JButton("成就");
@@ -368,13 +439,16 @@ public class GameFrame extends JFrame {
         // 创建保存游戏按钮
         JButton saveBtn = new JButton("保存游戏");
         saveBtn.addActionListener(e -> {
-            try {
-                SaveManager.save(game.getState());
-                JOptionPane.showMessageDialog(this, "游戏已保存到 save.dat 文件！");
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "保存失败: " + ex.getMessage(), 
-                    "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            saveBtn.setEnabled(false);
+            saveInBackground(ex -> {
+                saveBtn.setEnabled(true);
+                if (ex == null) {
+                    JOptionPane.showMessageDialog(this, "游戏已保存到 save.dat 文件！");
+                } else {
+                    JOptionPane.showMessageDialog(this, "保存失败: " + ex.getMessage(), 
+                        "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
         
         // 创建新游戏按钮
@@ -408,6 +482,7 @@ public class GameFrame extends JFrame {
         
         // 将按钮添加到面板中
         panel.add(undoBtn);      
+        panel.add(redoBtn);      
         panel.add(dealBtn);      
         panel.add(hintBtn);      
         panel.add(achievementBtn); 
@@ -421,6 +496,39 @@ public class GameFrame extends JFrame {
         add(board, BorderLayout.CENTER);
     }
 
+    /**
+     * 开始自动保存当前游戏：每步操作写入日志，定期写入检查点
+     */
+    private void startAutosave() {
+        try {
+            if (autosave == null) autosave = new AutosaveJournal();
+            autosave.attach(game);
+        } catch (IOException ex) {
+            System.err.println("自动保存不可用: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * 开始为当前游戏提前分析提示，分析进度显示在提示按钮上
+     * @param hintBtn 提示按钮
+     */
+    private void startHints(JButton hintBtn) {
+        hints.setListener(hint -> hintBtn.setText(hint.searching
+                ? "提示(分析中" + hint.round + "/" + hint.rounds() + ")"
+                : "提示"));
+        hints.request(game);
+    }
+
+    /**
+     * 在后台保存当前游戏，保存结束后在事件分发线程中执行回调
+     * 游戏状态在调用时立即编码，文件写入不占用事件分发线程
+     * @param done 回调，保存成功时参数为null，失败时为异常
+     */
+    private void saveInBackground(Consumer<Throwable> done) {
+        SaveManager.saveAsync(game.getState())
+                .whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> done.accept(error)));
+    }
+
     /**
      * 游戏棋盘内部类
      * 负责绘制游戏界面、处理鼠标事件、显示牌面等
@@ -458,24 +566,24 @@ public class GameFrame extends JFrame {
                     
                     // 如果点击位置在有效范围内
                     if (draggedColumn != -1) {
-                        Stack<Card> column = game.getState().columns[draggedColumn];
+                        Board board = game.getState().board;
+                        int size = board.size(draggedColumn);
                         
                         // 如果该列为空，返回
-                        if (column.isEmpty()) return;
+                        if (size == 0) return;
                         
                         int clickY = e.getY(); // 鼠标Y坐标
                         int cardIndex = -1;    // 点击的牌的索引
                         
                         // 从后往前遍历列中的牌，找到用户点击的牌
-                        for (int j = column.size() - 1; j >= 0; j--) {
+                        for (int j = size - 1; j >= 0; j--) {
                             int cardY; // 当前牌的Y坐标
                             
                             if (j == 0) {
                                 // 第一张牌的Y坐标固定为50
                                 cardY = 50;
                             } else {
-                                Card prevCard = column.get(j - 1);
-                                if (prevCard.isFaceUp()) {
+                                if (board.isFaceUp(draggedColumn, j - 1)) {
                                     // 如果前面的牌是正面朝上，间距较小
                                     cardY = 50 + (j - 1) * 25 + 25;
                                 } else {
@@ -491,21 +599,11 @@ public class GameFrame extends JFrame {
                             }
                         }
                         
-                        // 如果点击的是正面朝上的牌，开始拖拽
-                        if (cardIndex != -1 && column.get(cardIndex).isFaceUp()) {
-                            draggedCard = column.get(cardIndex);
-                            draggedCount = 1;
-                            
-                            // 计算可以拖拽的连续牌组数量（必须是连续递减的）
-                            for (int i = cardIndex; i < column.size() - 1; i++) {
-                                Card current = column.get(i);
-                                Card next = column.get(i + 1);
-                                if (current.getRank() == next.getRank() + 1) {
-                                    draggedCount++;
-                                } else {
-                                    break; // 不是连续递减时停止
-                                }
-                            }
+                        // 如果点击的牌位于列顶的可移动牌组内，开始拖拽
+                        // 可移动牌组（同花色连续递减）由牌面缓存，无需逐张检查
+                        if (cardIndex != -1 && cardIndex >= size - board.movableRun(draggedColumn)) {
+                            draggedCard = board.cardAt(draggedColumn, cardIndex);
+                            draggedCount = size - cardIndex;
                         } else {
                             // 点击的不是有效的牌，清空拖拽状态
                             draggedCard = null;
@@ -529,6 +627,7 @@ public class GameFrame extends JFrame {
                         if (targetColumn != -1 && targetColumn != draggedColumn) {
                             game.move(draggedColumn, targetColumn, draggedCount);
                             game.checkAndRemoveCompleteSets();
+                            hints.request(game);
                             
                             // 检查是否获胜
                             if (game.isGameWon()) {
@@ -592,17 +691,16 @@ public class GameFrame extends JFrame {
             int faceUpSpacing = 25;
             int faceDownSpacing = 25;
             
-            for (int i = 0; i < game.getState().columns.length; i++) {
-                Stack<Card> column = game.getState().columns[i];
-                for (int j = 0; j < column.size(); j++) {
-                    Card card = column.get(j);
+            Board board = game.getState().board;
+            for (int i = 0; i < Board.COLUMNS; i++) {
+                for (int j = 0; j < board.size(i); j++) {
+                    Card card = board.cardAt(i, j);
                     int x = 30 + i * 80;
                     int y;
                     if (j == 0) {
                         y = firstCardY;
                     } else {
-                        Card prevCard = column.get(j - 1);
-                        if (prevCard.isFaceUp()) {
+                        if (board.isFaceUp(i, j - 1)) {
                             y = firstCardY + (j - 1) * faceUpSpacing + faceUpSpacing;
                         } else {
                             y = firstCardY + j * faceDownSpacing;
@@ -611,7 +709,7 @@ public class GameFrame extends JFrame {
                     int width = 60;
                     int height = 90;
                     
-                    if (card.isFaceUp()) {
+                    if (board.isFaceUp(i, j)) {
                         g.setColor(Color.WHITE);
                         g.fillRect(x, y, width, height);
                         g.setColor(Color.BLACK);
@@ -638,18 +736,17 @@ public class GameFrame extends JFrame {
             }
 
             if (draggedCard != null && draggedColumn != -1) {
-                Stack<Card> sourceColumn = game.getState().columns[draggedColumn];
                 int x = mousePoint.x - 30;
                 int y = mousePoint.y - 45;
                 int width = 60;
                 int height = 90;
                 
-                int startIndex = sourceColumn.size() - draggedCount;
+                int startIndex = board.size(draggedColumn) - draggedCount;
                 for (int i = 0; i < draggedCount; i++) {
-                    Card card = sourceColumn.get(startIndex + i);
+                    Card card = board.cardAt(draggedColumn, startIndex + i);
                     int cardY = y + i * 15;
                     
-                    if (card.isFaceUp()) {
+                    if (board.isFaceUp(draggedColumn, startIndex + i)) {
                         g.setColor(Color.WHITE);
                         g.fillRect(x, cardY, width, height);
                         g.setColor(Color.BLACK);
@@ -674,7 +771,7 @@ public class GameFrame extends JFrame {
         }
 
         private int getColumnAt(Point p) {
-            for (int i = 0; i < game.getState().columns.length; i++) {
+            for (int i = 0; i < Board.COLUMNS; i++) {
                 if (p.x >= 30 + i * 80 && p.x <= 30 + (i + 1) * 80) {
                     return i;
                 }
@@ -0,0 +1,230 @@
+package ui;
+
+import game.Budget;
+import game.Evaluator;
+import game.GameState;
+import game.InformationSetHint;
+import game.Snapshot;
+import game.Solver;
+import game.SpiderGame;
+import game.WeightedEvaluator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * 后台提示服务
+ *
+ * 每次局面变化后，在界面线程中为当前局面创建快照，交给后台线程提前分析：
+ * - 分多轮搜索，每一轮放宽节点上限，每轮结束都发布目前最好的结果
+ * - 找到获胜路线或搜索完毕后立即停止，不再继续放宽
+ * - 局面再次变化时旧的分析作废：正在进行的搜索通过取消条件尽快停止，排队的分析直接跳过
+ *
+ * 默认使用不偷看暗牌的提示（InformationSetHint）：在与玩家所见一致的多个抽样局面上搜索并汇总，
+ * 抽样和结果在相邻的局面之间缓存；精确模式直接在真实局面上搜索，会用到暗牌和牌堆的顺序，只适合分析
+ *
+ * 玩家点击提示时直接读取最近发布的结果，不在界面线程中搜索，窗口不会卡顿
+ * request和setListener必须在事件分发线程中调用，current可以在任意线程中调用
+ */
+public class HintService {
+    /**
+     * 每一轮搜索的节点上限，逐轮放宽；不偷看暗牌时为所有抽样合计的上限
+     */
+    private static final long[] ROUND_NODES = {20_000, 200_000, 1_000_000, 4_000_000};
+
+    /**
+     * 每一轮搜索的时间上限（毫秒）
+     */
+    private static final long ROUND_TIME_LIMIT_MS = 5_000;
+
+    /**
+     * 某一时刻的提示结果，不可变
+     */
+    public static final class Hint {
+        /**
+         * 精确模式下目前最好的求解结果，第一轮完成之前或不使用精确模式时为null
+         */
+        public final Solver.Result result;
+
+        /**
+         * 不偷看暗牌时目前最好的提示，第一轮完成之前或使用精确模式时为null
+         */
+        public final InformationSetHint.Suggestion suggestion;
+
+        /**
+         * 已经完成的搜索轮数
+         */
+        public final int round;
+
+        /**
+         * 是否还在继续搜索，结果可能会更新
+         */
+        public final boolean searching;
+
+        Hint(Solver.Result result, InformationSetHint.Suggestion suggestion, int round, boolean searching) {
+            this.result = result;
+            this.suggestion = suggestion;
+            this.round = round;
+            this.searching = searching;
+        }
+
+        /**
+         * @return 总的搜索轮数
+         */
+        public int rounds() {
+            return ROUND_NODES.length;
+        }
+
+        /**
+         * @return 显示给玩家的提示信息，还在搜索时附带进度
+         */
+        public String message() {
+            if (result == null && suggestion == null) return "正在分析当前局面，请稍候再试";
+            String text = suggestion != null ? suggestion.message() : SpiderGame.describeHint(result);
+            if (searching) text += "\n（仍在深入分析，已完成" + round + "/" + rounds() + "轮，结果可能更新）";
+            return text;
+        }
+    }
+
+    /**
+     * 分析线程，守护线程不会阻止程序退出
+     * 单线程保证同一时刻只有一个搜索使用求解器
+     */
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hint-worker");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * 精确模式的求解器，只在分析线程中使用，置换表在多次分析之间复用；不使用精确模式时为null
+     */
+    private final Solver solver;
+
+    /**
+     * 不偷看暗牌的提示，只在分析线程中调用，抽样在多次分析之间缓存；使用精确模式时为null
+     */
+    private final InformationSetHint informationSet;
+
+    /**
+     * 局面的代数，每次request加1，分析开始时记下的代数与之不同即为过期
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 最近发布的结果，与generation一起在this上同步修改，保证过期的结果不会覆盖新的结果
+     */
+    private volatile Hint latest = new Hint(null, null, 0, false);
+
+    /**
+     * 提示更新时的回调，在事件分发线程中调用
+     */
+    private Consumer<Hint> listener;
+
+    /**
+     * 创建不偷看暗牌的提示服务
+     */
+    public HintService() {
+        this(false);
+    }
+
+    /**
+     * 使用启动时读取的评估函数（见WeightedEvaluator.loadDefault()）
+     * @param exact 是否使用精确模式：直接在真实局面上搜索，会用到玩家看不见的暗牌和牌堆顺序
+     */
+    public HintService(boolean exact) {
+        this(exact, WeightedEvaluator.loadDefault());
+    }
+
+    /**
+     * @param exact 是否使用精确模式：直接在真实局面上搜索，会用到玩家看不见的暗牌和牌堆顺序
+     * @param evaluator 没有找到获胜路线时挑选最好路线使用的评估函数
+     */
+    public HintService(boolean exact, Evaluator evaluator) {
+        long maxNodes = ROUND_NODES[ROUND_NODES.length - 1];
+        if (exact) {
+            solver = new Solver(maxNodes, ROUND_TIME_LIMIT_MS);
+            solver.setEvaluator(evaluator);
+            informationSet = null;
+        } else {
+            solver = null;
+            informationSet = new InformationSetHint(InformationSetHint.DEFAULT_SAMPLES,
+                    Runtime.getRuntime().availableProcessors(),
+                    maxNodes / InformationSetHint.DEFAULT_SAMPLES, System.nanoTime());
+            informationSet.setEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * 设置提示更新时的回调
+     * @param listener 回调，在事件分发线程中调用；传入null表示不再通知
+     */
+    public void setListener(Consumer<Hint> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 局面变化后调用，开始分析新局面，之前的分析作废
+     * @param game 当前游戏，只在调用期间读取
+     */
+    public void request(SpiderGame game) {
+        Snapshot snapshot = game.getState().snapshot();
+        long gen;
+        synchronized (this) {
+            gen = generation.incrementAndGet();
+        }
+        publish(gen, new Hint(null, null, 0, true));
+        worker.execute(() -> analyze(snapshot, gen));
+    }
+
+    /**
+     * @return 最近发布的提示结果
+     */
+    public Hint current() {
+        return latest;
+    }
+
+    /**
+     * 在分析线程中逐轮搜索，代数过期时立即返回
+     */
+    private void analyze(Snapshot snapshot, long gen) {
+        BooleanSupplier stale = () -> generation.get() != gen;
+        GameState state = informationSet != null ? snapshot.toState() : null;
+        for (int round = 0; round < ROUND_NODES.length; round++) {
+            if (stale.getAsBoolean()) return;
+            Budget budget = Budget.nodes(ROUND_NODES[round]).withMillis(ROUND_TIME_LIMIT_MS).withCancel(stale);
+            Solver.Result result = null;
+            InformationSetHint.Suggestion suggestion = null;
+            boolean decided;
+            if (informationSet != null) {
+                suggestion = informationSet.suggest(state, budget);
+                decided = suggestion.wins == suggestion.samples || suggestion.noWins == suggestion.samples;
+            } else {
+                result = solver.solve(snapshot, budget);
+                decided = result.status != Solver.Status.UNKNOWN;
+            }
+            if (stale.getAsBoolean()) return; // 被取消的搜索结果不完整，直接丢弃
+
+            boolean finished = decided || round == ROUND_NODES.length - 1;
+            publish(gen, new Hint(result, suggestion, round + 1, !finished));
+            if (finished) return;
+        }
+    }
+
+    /**
+     * 发布结果并在事件分发线程中通知回调，代数过期的结果不发布
+     */
+    private void publish(long gen, Hint hint) {
+        synchronized (this) {
+            if (generation.get() != gen) return;
+            latest = hint;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (listener != null && generation.get() == gen) listener.accept(hint);
+        });
+    }
+}
@@ -0,0 +1,428 @@
+package util;
+
+import game.GameListener;
+import game.GameState;
+import game.SpiderGame;
+import game.UndoLog;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自动保存日志
+ *
+ * 采用“预写日志 + 定期检查点”的方式自动保存正在进行的游戏，JVM异常退出后可以恢复：
+ * - 日志文件：内存映射的固定大小文件，每次移动、发牌、移除牌组、撤销都追加2个字节，
+ *   写入只是一次内存操作，不需要系统调用，JVM崩溃后已写入的内容仍由操作系统写回磁盘
+ * - 检查点文件：每隔CHECKPOINT_INTERVAL步，把游戏状态编码为牌面快照，
+ *   在后台线程中原子地写入检查点文件，同时在日志中写一个检查点标记
+ * - 恢复：读取最近一次写完的检查点，在日志中找到对应的标记，重放标记之后的全部操作
+ *
+ * 每次开始跟踪一局游戏时生成新的会话编号，日志头和检查点都带有会话编号，
+ * 编号不一致的日志不会被用于恢复，避免把上一局的操作重放到这一局上
+ *
+ * 日志文件分为前后两段，交替使用：
+ * - 开始跟踪一局游戏或当前段写满时，切换到另一段，以当前局面的检查点作为新段的起点
+ * - 这个检查点和定期的检查点一样在后台线程中写入，监听回调中不做任何阻塞的I/O；
+ *   写完之前新的操作照常追加到新段，旧段保持不变
+ * - 恢复时从检查点标记所在的段开始重放，重放完后如果另一段是同一会话紧接着的下一段，
+ *   继续重放；因此新段的检查点没有写完就崩溃时，用旧的检查点重放旧段和新段，不会丢失操作
+ * - 只有在再次切换、需要覆盖旧段时，才等待上一次切换的检查点写完，
+ *   此时距离上一次切换至少已经过了一整段（数万步），实际上不会等待
+ *
+ * 日志文件格式（每段SEGMENT_SIZE字节）：
+ * - 段头（32字节）：魔数"SPJL"(4) 版本号(2) 保留(2) 会话编号(8) 段序号(8) 保留(8)
+ * - 日志项（每项2字节）：移动、发牌、移除牌组使用SaveManager.packMove的编码；
+ *   UNDO表示撤销；JUMP表示跳转，之后紧跟一个检查点标记；
+ *   MARK表示检查点标记，后跟8字节的检查点代数；0表示本段结束
+ *
+ * 检查点文件格式：会话编号(8) 检查点代数(8) 牌面快照（SaveManager.encodeSnapshot的结果）
+ *
+ * 所有方法都应在事件分发线程中调用
+ */
+public class AutosaveJournal implements GameListener {
+    /**
+     * 日志文件名
+     */
+    public static final String JOURNAL_FILE = "autosave.journal";
+
+    /**
+     * 检查点文件名
+     */
+    public static final String CHECKPOINT_FILE = "autosave.checkpoint";
+
+    /**
+     * 每隔多少步写一次检查点
+     */
+    public static final int CHECKPOINT_INTERVAL = 50;
+
+    private static final int MAGIC = 0x53504A4C; // "SPJL"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int JOURNAL_SIZE = 256 * 1024;
+
+    /**
+     * 每段的大小，日志文件由两段组成
+     */
+    private static final int SEGMENT_SIZE = JOURNAL_SIZE / 2;
+
+    /**
+     * 日志项：撤销，对应源列编码15，不会与移动冲突
+     */
+    private static final short UNDO = (short) 0xFFFF;
+
+    /**
+     * 日志项：检查点标记，对应源列编码14，不会与移动冲突
+     */
+    private static final short MARK = (short) 0xFFFE;
+
+    /**
+     * 日志项：跳转到时间线上的另一个位置，对应源列编码13，不会与移动冲突
+     */
+    private static final short JUMP = (short) 0xFFFD;
+
+    /**
+     * 日志结束标记
+     */
+    private static final short END = 0;
+
+    /**
+     * 后台写检查点的线程，单线程保证检查点按顺序落盘
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "autosave-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path journalFile;
+    private final Path checkpointFile;
+    private final MappedByteBuffer journal;
+
+    private SpiderGame game;
+    private long session;
+    private long generation;
+
+    /**
+     * 当前段的序号和起始偏移
+     */
+    private long segment;
+    private int segmentStart;
+
+    /**
+     * 在当前段中的写入位置（相对文件开头）
+     */
+    private int position;
+    private int sinceCheckpoint;
+
+    /**
+     * 切换到当前段时提交的检查点，写完之前另一段还不能被覆盖
+     */
+    private Future<?> pendingSwitch;
+
+    /**
+     * 使用默认文件名创建自动保存日志
+     * @throws IOException 无法创建或映射日志文件
+     */
+    public AutosaveJournal() throws IOException {
+        this(Paths.get(JOURNAL_FILE), Paths.get(CHECKPOINT_FILE));
+    }
+
+    /**
+     * 创建自动保存日志
+     * @param journalFile 日志文件
+     * @param checkpointFile 检查点文件
+     * @throws IOException 无法创建或映射日志文件
+     */
+    public AutosaveJournal(Path journalFile, Path checkpointFile) throws IOException {
+        this.journalFile = journalFile;
+        this.checkpointFile = checkpointFile;
+        try (FileChannel channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, JOURNAL_SIZE);
+        }
+    }
+
+    /**
+     * 开始跟踪一局游戏
+     * 切换到另一段作为本次会话的起点，在后台写入起点的检查点，然后注册为游戏的监听器
+     * 起点的检查点写完之前崩溃时，恢复得到的是上一局游戏（如果还没有被丢弃）
+     * @param game 要跟踪的游戏，之前跟踪的游戏会被取消监听
+     */
+    public void attach(SpiderGame game) {
+        if (this.game != null) this.game.setListener(null);
+        this.game = game;
+        session = ThreadLocalRandom.current().nextLong();
+        generation = 0;
+        segment = 0;
+        switchSegment();
+        game.setListener(this);
+    }
+
+    /**
+     * 停止跟踪并删除日志和检查点
+     * 游戏已经正常保存或结束时调用，下次启动不会再提示恢复
+     */
+    public void discard() {
+        if (game != null) game.setListener(null);
+        game = null;
+        try {
+            // 等待已提交的检查点写完，避免删除后又被写回
+            WRITER.submit(() -> { }).get();
+            journal.putInt(0, 0);
+            journal.putInt(SEGMENT_SIZE, 0);
+            journal.force();
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException | ExecutionException e) {
+            System.err.println("清除自动保存失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void moved(int from, int to, int count) {
+        append(SaveManager.packMove(from, to, count));
+    }
+
+    @Override
+    public void dealt() {
+        append(SaveManager.packMove(-1, -1, 10));
+    }
+
+    @Override
+    public void setRemoved(int column) {
+        append(SaveManager.packMove(column, -2, 13));
+    }
+
+    @Override
+    public void undone() {
+        append(UNDO);
+    }
+
+    /**
+     * 跳转后的局面无法用几个日志项表示：写一个跳转标记，再立即写检查点
+     * 检查点写完之前崩溃时，恢复会停在跳转标记处，得到跳转之前的局面
+     */
+    @Override
+    public void jumped() {
+        append(JUMP);
+        if (sinceCheckpoint != 0) checkpoint();
+    }
+
+    /**
+     * 追加一个日志项，达到间隔时写检查点
+     * 先写新的结束标记，最后才写日志项本身，写到一半时崩溃只会丢失这一项
+     * 追加之后当前段剩下的空间不够再写一个检查点标记和一个日志项时，切换到另一段，
+     * 因此日志项总是写得下，旧段的末尾正好是新段起点的局面
+     */
+    private void append(short entry) {
+        journal.putShort(position + 2, END);
+        journal.putShort(position, entry);
+        position += 2;
+
+        if (position + 10 + 2 + 2 > segmentStart + SEGMENT_SIZE) {
+            // 当前段写满，极少发生
+            generation++;
+            segment++;
+            switchSegment();
+        } else if (++sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * 在日志中写检查点标记，并在后台写入对应的检查点
+     * 检查点写完之前崩溃时，恢复会使用上一个检查点并跳过这个标记
+     */
+    private void checkpoint() {
+        sinceCheckpoint = 0;
+        long gen = ++generation;
+        journal.putShort(position + 10, END);
+        journal.putLong(position + 2, gen);
+        journal.putShort(position, MARK);
+        position += 10;
+
+        writeCheckpoint(gen);
+    }
+
+    /**
+     * 把当前局面编码为指定代数的检查点，交给写线程在后台写入
+     * 写线程是单线程，检查点按提交的顺序落盘
+     * @return 写入任务
+     */
+    private Future<?> writeCheckpoint(long gen) {
+        ByteBuffer data = encodeCheckpoint(gen);
+        return WRITER.submit(() -> {
+            try {
+                SaveManager.writeAtomically(checkpointFile, data);
+            } catch (IOException e) {
+                System.err.println("写入检查点失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 切换到另一段：以当前代数的检查点作为新段的起点，检查点在后台写入
+     * 另一段中可能还有恢复需要的内容，先等待上一次切换的检查点写完再覆盖
+     */
+    private void switchSegment() {
+        awaitPendingSwitch();
+        segmentStart = segmentStart == 0 ? SEGMENT_SIZE : 0;
+        int base = segmentStart;
+        journal.putInt(base, 0);
+        journal.putShort(base + 4, VERSION);
+        journal.putLong(base + 8, session);
+        journal.putLong(base + 16, segment);
+        journal.putShort(base + HEADER_SIZE + 10, END);
+        journal.putLong(base + HEADER_SIZE + 2, generation);
+        journal.putShort(base + HEADER_SIZE, MARK);
+        journal.putInt(base, MAGIC); // 魔数最后写入，之前崩溃时这一段视为无效
+        position = base + HEADER_SIZE + 10;
+        sinceCheckpoint = 0;
+        pendingSwitch = writeCheckpoint(generation);
+    }
+
+    /**
+     * 等待上一次切换提交的检查点写完
+     */
+    private void awaitPendingSwitch() {
+        if (pendingSwitch == null) return;
+        try {
+            pendingSwitch.get();
+        } catch (ExecutionException e) {
+            System.err.println("写入检查点失败: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendingSwitch = null;
+    }
+
+    private ByteBuffer encodeCheckpoint(long gen) {
+        ByteBuffer snapshot = SaveManager.encodeSnapshot(game.getState());
+        ByteBuffer data = ByteBuffer.allocate(16 + snapshot.remaining());
+        data.putLong(session).putLong(gen).put(snapshot);
+        data.flip();
+        return data;
+    }
+
+    /**
+     * 从检查点和日志恢复上次异常退出时的游戏
+     * @return 恢复的游戏状态；没有可恢复的游戏时返回null
+     * @throws IOException 检查点文件损坏
+     */
+    public static GameState recover() throws IOException {
+        return recover(Paths.get(JOURNAL_FILE), Paths.get(CHECKPOINT_FILE));
+    }
+
+    /**
+     * 从指定的检查点和日志文件恢复游戏
+     * @see #recover()
+     */
+    public static GameState recover(Path journalFile, Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) return null;
+
+        ByteBuffer checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointFile));
+        if (checkpoint.remaining() < 16) throw new IOException("检查点文件不完整");
+        long session = checkpoint.getLong();
+        long generation = checkpoint.getLong();
+        GameState state = SaveManager.decode(checkpoint.slice());
+        if (!Files.exists(journalFile)) return state;
+
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        if (journal.limit() < JOURNAL_SIZE) return state;
+
+        // 找到检查点标记所在的段
+        int first = -1;
+        int pos = -1;
+        for (int base = 0; base < JOURNAL_SIZE && first < 0; base += SEGMENT_SIZE) {
+            if (!validSegment(journal, base, session)) continue;
+            pos = findMark(journal, base, generation);
+            if (pos >= 0) first = base;
+        }
+        if (first < 0) return state;
+
+        SpiderGame game = new SpiderGame(state);
+        if (replay(game, journal, pos, first + SEGMENT_SIZE)) {
+            // 另一段是同一会话紧接着的下一段时继续重放：切换时的检查点没有写完就崩溃了
+            int second = SEGMENT_SIZE - first;
+            if (validSegment(journal, second, session)
+                    && journal.getLong(second + 16) == journal.getLong(first + 16) + 1) {
+                replay(game, journal, second + HEADER_SIZE, second + SEGMENT_SIZE);
+            }
+        }
+        state.board.takeDirtyColumns();
+        return state;
+    }
+
+    /**
+     * @return 从base开始的一段是否为指定会话的有效段
+     */
+    private static boolean validSegment(ByteBuffer journal, int base, long session) {
+        return journal.getInt(base) == MAGIC && journal.getShort(base + 4) == VERSION
+                && journal.getLong(base + 8) == session;
+    }
+
+    /**
+     * 在一段中查找指定代数的检查点标记
+     * @return 标记之后第一个日志项的位置，找不到时为-1
+     */
+    private static int findMark(ByteBuffer journal, int base, long generation) {
+        int end = base + SEGMENT_SIZE;
+        int pos = base + HEADER_SIZE;
+        while (pos + 2 <= end) {
+            short entry = journal.getShort(pos);
+            pos += 2;
+            if (entry == END) break;
+            if (entry == MARK) {
+                if (pos + 8 > end) break;
+                if (journal.getLong(pos) == generation) return pos + 8;
+                pos += 8;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从pos开始重放日志项，直到本段结束
+     * @return 是否完整地重放到了本段的结束标记；遇到跳转或无法重放的操作时为false
+     */
+    private static boolean replay(SpiderGame game, ByteBuffer journal, int pos, int end) {
+        GameState state = game.getState();
+        while (pos + 2 <= end) {
+            short entry = journal.getShort(pos);
+            pos += 2;
+            if (entry == END) return true;
+            if (entry == MARK) {
+                pos += 8;
+                continue;
+            }
+            if (entry == JUMP) return false; // 跳转之后的检查点没有写完
+
+            if (entry == UNDO) {
+                if (state.undoLog.isEmpty()) return false;
+                game.undo();
+                continue;
+            }
+            // 重放不计分，按对应操作的计分规则补上
+            long move = SaveManager.unpackMove(entry);
+            if (!game.replay(move)) return false;
+            if (UndoLog.kind(move) == UndoLog.REMOVE) {
+                state.score += 100;
+            } else if (UndoLog.kind(move) == UndoLog.MOVE) {
+                state.score--;
+            }
+        }
+        return false;
+    }
+}
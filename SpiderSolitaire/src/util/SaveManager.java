@@ -1,47 +1,418 @@
 package util;
 
+import game.Board;
 import game.GameState;
+import game.SpiderGame;
+import game.UndoLog;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
 
 /**
  * 保存管理器类
  * 负责将游戏状态保存到文件，以及从文件加载游戏状态
- * 使用Java对象序列化机制实现游戏进度的持久化存储
  * 支持玩家中断游戏后再次恢复游戏
+ *
+ * 存档使用带版本号的紧凑二进制格式（所有多字节整数均为大端序），有两种版本：
+ *
+ * 版本3，对局记录（保存游戏时使用）：
+ * 一局游戏完全由牌局编号和走过的操作决定，因此只保存这两项，不保存牌面
+ * - 文件头：魔数"SPDR"(4) 版本号(2) 难度(1) 牌局编号(8) 撤销奖励分(4)
+ * - 操作记录：条数(4)，每条操作压缩为2个字节，见packMove
+ * - 终局哈希：重放后牌面的Zobrist哈希值(8)
+ * - 校验和：以上全部内容的CRC32(4)
+ * 读取时按牌局编号重新发牌，再通过SpiderGame.replay逐条重放并检查每一步是否合法，
+ * 最后核对终局哈希，因此存档同时也是一份可验证的对局记录：被篡改的记录无法重放出相同的局面
+ * 分数不直接保存：重放时不计分，结束后由开局分数和各步操作按计分规则一次性算出，
+ * 再加上撤销奖励分，即撤销发牌或移除牌组时每次奖励的1分。撤销的过程不在记录中，
+ * 这一项只受CRC32保护，无法通过重放验证，篡改它只能让分数比记录的路线高出这一项的值
+ *
+ * 版本2，旧的对局记录，与版本3相同，只是文件头中直接保存分数，读取时原样使用，不验证
+ *
+ * 版本1，牌面快照（不需要重放，读取更快）：
+ * - 文件头：魔数"SPDR"(4) 版本号(2) 难度(1) 牌局编号(8) 分数(4) 已完成牌组数(1) 剩余发牌次数(1)
+ * - 10个牌列：每列先写张数(1)，再按从底到顶的顺序每张牌写1个字节
+ *   （低6位与Board的编码相同，第6位FACE_UP表示正面朝上）
+ * - 牌堆：张数(1)，再每张牌1个字节
+ * - 撤销记录：条数(4)，每条操作压缩为2个字节
+ * - 校验和：以上全部内容的CRC32(4)
+ *
+ * 读取时通过NIO一次读入内存后按顺序解析，不使用反射和对象序列化
+ *
+ * 写入过程保证崩溃安全：先写到临时文件并强制刷到磁盘，再原子地重命名为存档文件，
+ * 任何时刻中断都只会留下旧存档或新存档，不会留下写了一半的存档
+ * saveAsync在调用线程上编码（只有几百字节，耗时几微秒），文件写入交给后台线程，
+ * 界面线程不会因为磁盘I/O而卡顿
  */
 public class SaveManager {
+    /**
+     * 存档文件名
+     */
+    public static final String SAVE_FILE = "save.dat";
+
+    /**
+     * 存档文件魔数，即ASCII的"SPDR"
+     */
+    private static final int MAGIC = 0x53504452;
+
+    /**
+     * 牌面快照格式的版本号
+     */
+    private static final short VERSION_SNAPSHOT = 1;
+
+    /**
+     * 对局记录格式的版本号
+     */
+    private static final short VERSION_RECORD = 3;
+
+    /**
+     * 直接保存分数的旧对局记录格式的版本号，只用于读取
+     */
+    private static final short VERSION_RECORD_SCORED = 2;
+
+    /**
+     * 牌面快照中表示正面朝上的标志位
+     */
+    private static final int FACE_UP = 0x40;
+
+    /**
+     * 存档文件大小上限，超过此大小的文件一定不是合法存档
+     */
+    private static final int MAX_FILE_SIZE = 1 << 20;
+
+    /**
+     * 后台写入线程，单线程保证多次保存按提交顺序落盘
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "save-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * 保存游戏状态到文件
-     * 将当前游戏状态序列化为二进制格式并保存到"save.dat"文件
+     * 将当前游戏状态编码为对局记录并保存到"save.dat"文件
      * @param state 要保存的游戏状态对象
      * @throws IOException 如果写入文件时发生I/O错误
      */
     public static void save(GameState state) throws IOException {
-        // 创建文件输出流，用于将数据写入文件
-        ObjectOutputStream out =
-                new ObjectOutputStream(new FileOutputStream("save.dat"));
-        
-        // 将游戏状态对象写入文件（序列化）
-        out.writeObject(state);
-        
-        // 关闭输出流，确保数据完全写入
-        out.close();
+        writeAtomically(Paths.get(SAVE_FILE), encode(state));
+    }
+
+    /**
+     * 在后台线程中保存游戏状态
+     * 调用时立即把状态编码为字节数组作为快照，之后游戏状态的变化不会影响这次保存
+     * @param state 要保存的游戏状态对象，只在调用期间读取
+     * @return 保存完成时正常结束，写入失败时以IOException异常结束
+     *         回调在后台写入线程中执行，更新界面需要自行切换到事件分发线程
+     */
+    public static CompletableFuture<Void> saveAsync(GameState state) {
+        ByteBuffer buffer = encode(state);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        WRITER.execute(() -> {
+            try {
+                writeAtomically(Paths.get(SAVE_FILE), buffer);
+                result.complete(null);
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 把数据写入临时文件、刷到磁盘后原子地替换目标文件
+     * @param file 目标文件
+     * @param buffer 要写入的数据，从position写到limit
+     */
+    static void writeAtomically(Path file, ByteBuffer buffer) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // 数据和文件元信息都写到磁盘后才替换旧存档
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // 把目录项的修改也刷到磁盘，部分平台不支持打开目录，忽略即可
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+        }
     }
 
     /**
      * 从文件加载游戏状态
-     * 读取"save.dat"文件中的数据并反序列化为GameState对象
+     * 读取"save.dat"文件中的数据并解码为GameState对象
      * @return 从文件中加载的游戏状态对象
-     * @throws IOException 如果读取文件时发生I/O错误
-     * @throws ClassNotFoundException 如果找不到对应的类定义
-     */
-    public static GameState load() throws IOException, ClassNotFoundException {
-        // 创建文件输入流，用于从文件读取数据
-        ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream("save.dat"));
-        
-        // 从文件中读取对象并强制类型转换为GameState（反序列化）
-        return (GameState) in.readObject();
+     * @throws IOException 如果读取文件时发生I/O错误，或者文件不是合法的存档
+     */
+    public static GameState load() throws IOException {
+        Path path = Paths.get(SAVE_FILE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_FILE_SIZE) {
+                throw new IOException("存档文件过大，不是有效的存档");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * 把游戏状态编码为对局记录格式
+     * @param state 游戏状态
+     * @return 编码结果，position为0，limit为数据长度
+     */
+    public static ByteBuffer encode(GameState state) {
+        int moves = state.undoLog.size();
+        ByteBuffer buffer = ByteBuffer.allocate(19 + 4 + moves * 2 + 8 + 4);
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION_RECORD);
+        buffer.put((byte) state.difficulty);
+        buffer.putLong(state.dealNumber);
+        int bonusPosition = buffer.position();
+        buffer.putInt(0);
+
+        // 分数中不能由操作记录算出的部分只有撤销奖励分
+        int lineScore = GameState.INITIAL_SCORE;
+        buffer.putInt(moves);
+        for (int i = 0; i < moves; i++) {
+            long entry = state.undoLog.get(i);
+            buffer.putShort(packMove(entry));
+            lineScore += SpiderGame.scoreDelta(entry);
+        }
+        buffer.putInt(bonusPosition, state.score - lineScore);
+        buffer.putLong(state.hash());
+
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 把游戏状态编码为牌面快照格式
+     * @param state 游戏状态
+     * @return 编码结果，position为0，limit为数据长度
+     */
+    public static ByteBuffer encodeSnapshot(GameState state) {
+        Board board = state.board;
+        int cards = board.stockSize();
+        for (int col = 0; col < Board.COLUMNS; col++) cards += board.size(col);
+        int moves = state.undoLog.size();
+        ByteBuffer buffer = ByteBuffer.allocate(21 + Board.COLUMNS + 1 + cards + 4 + moves * 2 + 4);
+
+        // 文件头
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION_SNAPSHOT);
+        buffer.put((byte) state.difficulty);
+        buffer.putLong(state.dealNumber);
+        buffer.putInt(state.score);
+        buffer.put((byte) state.completedSets);
+        buffer.put((byte) state.remainingDeals);
+
+        // 牌列和牌堆，每张牌一个字节
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int size = board.size(col);
+            buffer.put((byte) size);
+            for (int i = 0; i < size; i++) {
+                buffer.put((byte) (board.get(col, i) | (board.isFaceUp(col, i) ? FACE_UP : 0)));
+            }
+        }
+        buffer.put((byte) board.stockSize());
+        for (int i = 0; i < board.stockSize(); i++) buffer.put(board.stockAt(i));
+
+        // 撤销记录，从最早的操作开始
+        buffer.putInt(moves);
+        for (int i = 0; i < moves; i++) buffer.putShort(packMove(state.undoLog.get(i)));
+
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 解码存档，两种格式都支持
+     * @param buffer 存档数据，从position读到limit
+     * @return 游戏状态
+     * @throws IOException 数据不是合法的存档、版本不支持、校验和不匹配或对局记录无法重放
+     */
+    public static GameState decode(ByteBuffer buffer) throws IOException {
+        try {
+            int start = buffer.position();
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("不是有效的存档文件");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION_SNAPSHOT && version != VERSION_RECORD && version != VERSION_RECORD_SCORED) {
+                throw new IOException("不支持的存档版本: " + version);
+            }
+
+            // 先校验整个文件，再解析内容
+            int end = buffer.limit() - 4;
+            if (end < buffer.position()) throw new IOException("存档文件不完整");
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.position(start).limit(end);
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("存档已损坏：校验和不匹配");
+            }
+
+            return version == VERSION_SNAPSHOT ? decodeSnapshot(buffer, end) : decodeRecord(buffer, end, version);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("存档文件不完整", e);
+        }
+    }
+
+    /**
+     * 解码对局记录：按牌局编号重新发牌，再重放全部操作，最后算出分数
+     */
+    private static GameState decodeRecord(ByteBuffer buffer, int end, short version) throws IOException {
+        int difficulty = checkDifficulty(buffer.get());
+        long dealNumber = buffer.getLong();
+        int scoreField = buffer.getInt();
+        if (version == VERSION_RECORD && scoreField < 0) throw new IOException("存档已损坏：撤销奖励分错误");
+
+        int moves = buffer.getInt();
+        if (moves < 0 || (long) moves * 2 + 8 != end - buffer.position()) throw new IOException("存档已损坏：操作记录长度错误");
+
+        GameState state = new GameState(difficulty, dealNumber);
+        SpiderGame game = new SpiderGame(state);
+        int lineScore = GameState.INITIAL_SCORE;
+        for (int i = 0; i < moves; i++) {
+            long move = unpackMove(buffer.getShort());
+            if (!game.replay(move)) {
+                throw new IOException("对局记录不合法：第" + (i + 1) + "步无法执行");
+            }
+            lineScore += SpiderGame.scoreDelta(move);
+        }
+        state.board.takeDirtyColumns(); // 重放中移除牌组已由记录给出，不需要再检查
+        if (buffer.getLong() != state.hash()) {
+            throw new IOException("对局记录不合法：重放后的局面与记录不符");
+        }
+
+        // 重放时跳过了计分，最后按重放的操作一次性算出；旧格式直接使用保存的分数
+        state.score = version == VERSION_RECORD ? lineScore + scoreField : scoreField;
+        return state;
+    }
+
+    /**
+     * 解码牌面快照
+     */
+    private static GameState decodeSnapshot(ByteBuffer buffer, int end) throws IOException {
+        int difficulty = checkDifficulty(buffer.get());
+        long dealNumber = buffer.getLong();
+        int score = buffer.getInt();
+        int completedSets = buffer.get();
+        int remainingDeals = buffer.get();
+
+        Board board = new Board();
+        for (int col = 0; col < Board.COLUMNS; col++) {
+            int size = buffer.get() & 0xFF;
+            if (size > Board.MAX_HEIGHT) throw new IOException("存档已损坏：第" + (col + 1) + "列张数错误");
+            for (int i = 0; i < size; i++) {
+                byte code = buffer.get();
+                try {
+                    board.push(col, checkCard((byte) (code & ~FACE_UP)), (code & FACE_UP) != 0);
+                } catch (IllegalStateException e) {
+                    throw new IOException("存档已损坏：第" + (col + 1) + "列的暗牌位置错误", e);
+                }
+            }
+        }
+        int stockSize = buffer.get() & 0xFF;
+        if (stockSize > Board.MAX_STOCK) throw new IOException("存档已损坏：牌堆张数错误");
+        for (int i = 0; i < stockSize; i++) board.pushStock(checkCard(buffer.get()));
+        board.takeDirtyColumns(); // 读档不算放入新牌，不需要检查完整牌组
+
+        GameState state = new GameState(difficulty, dealNumber, board);
+        state.score = score;
+        state.completedSets = completedSets;
+        state.remainingDeals = remainingDeals;
+
+        int moves = buffer.getInt();
+        if (moves < 0 || (long) moves * 2 > end - buffer.position()) throw new IOException("存档已损坏：撤销记录错误");
+        for (int i = 0; i < moves; i++) state.undoLog.push(unpackMove(buffer.getShort()));
+
+        if (buffer.position() != end) throw new IOException("存档已损坏：长度不匹配");
+        return state;
+    }
+
+    /**
+     * 把一条操作压缩为2个字节
+     * 位0-3：源列+1（发牌为0），位4-7：目标列+2（发牌为1，移除牌组为0），
+     * 位8-11：张数，位12：是否翻牌，位13-14：花色
+     */
+    static short packMove(long entry) {
+        return (short) (packMove(UndoLog.from(entry), UndoLog.to(entry), UndoLog.count(entry))
+                | (UndoLog.flipped(entry) ? 1 : 0) << 12 | UndoLog.suit(entry) << 13);
+    }
+
+    /**
+     * 压缩一条不带翻牌和花色信息的操作，编码同上
+     */
+    static short packMove(int from, int to, int count) {
+        return (short) ((from + 1) | (to + 2) << 4 | count << 8);
+    }
+
+    /**
+     * 还原packMove压缩的操作，结果为UndoLog的编码
+     * 非法的列号统一编码为15，由SpiderGame.replay拒绝
+     */
+    static long unpackMove(short packed) {
+        int from = (packed & 0xF) - 1;
+        int to = ((packed >> 4) & 0xF) - 2;
+        boolean flipped = (packed & 0x1000) != 0;
+        if (from == -1 && to == -1) return UndoLog.deal();
+        if (to == -2) return UndoLog.remove(from & 0xF, (packed >> 13) & 0x3, flipped);
+        return UndoLog.move(from & 0xF, to & 0xF, (packed >> 8) & 0xF, flipped);
+    }
+
+    /**
+     * 检查难度是否为1、2、4之一
+     */
+    private static int checkDifficulty(int difficulty) throws IOException {
+        if (difficulty != 1 && difficulty != 2 && difficulty != 4) throw new IOException("存档已损坏：难度错误");
+        return difficulty;
+    }
+
+    /**
+     * 检查牌的编码是否合法（点数1-13，没有多余的标志位）
+     */
+    private static byte checkCard(byte code) throws IOException {
+        int rank = Board.rank(code);
+        if (rank < 1 || rank > 13 || (code & ~0x3F) != 0) throw new IOException("存档已损坏：牌的编码错误");
+        return code;
+    }
+
+    private static int checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
     }
 }